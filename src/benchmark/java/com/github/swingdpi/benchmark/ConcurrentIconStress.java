@@ -0,0 +1,249 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.benchmark;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+
+import com.github.swingdpi.util.IconAtlas;
+import com.github.swingdpi.util.LoopBreakingScaledIcon;
+import com.github.swingdpi.util.ScaledIcon;
+
+/**
+ * Paints shared {@link ScaledIcon}s from many threads at once, while the EDT paints them too and
+ * caches are repeatedly cleared, and checks every result against a reference painted on the EDT.
+ * Exits with a non-zero status if any paint failed or differed.
+ * <p>
+ * Usage: {@code ConcurrentIconStress [threads] [paints-per-thread]}
+ */
+public class ConcurrentIconStress {
+
+    private static final String LOOPING_KEY = "ConcurrentIconStress.icon";
+
+    public static void main(String[] args) throws Exception {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        final int paints = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+
+        final List<Icon> icons = new ArrayList<Icon>();
+        final List<int[]> enabledReferences = new ArrayList<int[]>();
+        final List<int[]> disabledReferences = new ArrayList<int[]>();
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                createIcons(icons);
+                for (Icon icon : icons) {
+                    enabledReferences.add(paint(icon, null));
+                    disabledReferences.add(paint(icon, createDisabledButton()));
+                }
+            }
+        });
+
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread edtLoad = startEdtLoad(icons, running);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final long seed = t;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    JButton disabled = createDisabledButton();
+                    for (int i = 0; i < paints; i++) {
+                        int index = random.nextInt(icons.size());
+                        boolean enabled = random.nextBoolean();
+                        if (random.nextInt(500) == 0) {
+                            ScaledIcon.clearCaches();
+                        } else if (random.nextInt(500) == 0) {
+                            ScaledIcon.trimCaches();
+                        }
+                        try {
+                            int[] pixels = paint(icons.get(index), enabled ? null : disabled);
+                            int[] expected = (enabled ? enabledReferences : disabledReferences)
+                                    .get(index);
+                            if (!Arrays.equals(expected, pixels)) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        edtLoad.join();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        System.out.printf("%d threads x %d paints in %.1f ms: %d failures%n",
+                threads, paints, elapsed / 1e6, failures.get());
+        System.out.println(ScaledIcon.getCacheStatistics());
+        System.exit(failures.get() == 0 ? 0 : 1);
+    }
+
+    private static void createIcons(List<Icon> icons) {
+        IconAtlas.setEnabled(true);
+        for (int i = 0; i < 24; i++) {
+            Icon image = new ImageIcon(createImage(12 + i, i));
+            icons.add(new ScaledIcon(image, (i % 2 == 0) ? 1.5f : 2f));
+        }
+
+        // A painted (not cached) icon, and one which delegates back through the UIDefaults
+        icons.add(new ScaledIcon(new PatternIcon(), 1.75f));
+        LoopingIcon looping = new LoopingIcon();
+        LoopBreakingScaledIcon loopBreaking = new LoopBreakingScaledIcon(LOOPING_KEY, looping, 2f);
+        UIManager.getLookAndFeelDefaults().put(LOOPING_KEY, loopBreaking);
+        icons.add(loopBreaking);
+    }
+
+    private static BufferedImage createImage(int size, int seed) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(Color.HSBtoRGB(seed / 24f, 0.8f, 0.9f)));
+        g.fillOval(1, 1, size - 2, size - 2);
+        g.setColor(Color.BLACK);
+        g.drawLine(0, seed % size, size - 1, size - 1 - seed % size);
+        g.dispose();
+        return image;
+    }
+
+    private static JButton createDisabledButton() {
+        JButton button = new JButton();
+        button.setEnabled(false);
+        return button;
+    }
+
+    private static int[] paint(Icon icon, Component c) {
+        int width = icon.getIconWidth();
+        int height = icon.getIconHeight();
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            icon.paintIcon(c, g, 0, 0);
+        } finally {
+            g.dispose();
+        }
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
+    /**
+     * Keeps the EDT painting the icons too, until told to stop.
+     */
+    private static Thread startEdtLoad(final List<Icon> icons, final AtomicBoolean running) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    try {
+                        SwingUtilities.invokeAndWait(new Runnable() {
+                            @Override
+                            public void run() {
+                                for (Icon icon : icons) {
+                                    paint(icon, null);
+                                }
+                            }
+                        });
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }, "EDT load");
+        thread.start();
+        return thread;
+    }
+
+    private static class PatternIcon implements Icon {
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.setColor(Color.BLUE);
+            g.fillRect(x + 2, y + 2, 8, 8);
+            g.setColor(Color.ORANGE);
+            g.drawRect(x, y, 11, 11);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return 12;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return 12;
+        }
+    }
+
+    /**
+     * Mimics the icons of WindowsIconFactory: if another icon is installed under its key, it
+     * delegates to that instead.
+     */
+    private static class LoopingIcon extends PatternIcon {
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            Icon installed = UIManager.getIcon(LOOPING_KEY);
+            if (installed != this && installed != null) {
+                installed.paintIcon(c, g, x, y);
+            } else {
+                super.paintIcon(c, g, x, y);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            Icon installed = UIManager.getIcon(LOOPING_KEY);
+            return (installed != this && installed != null) ? installed.getIconWidth() : 12;
+        }
+
+        @Override
+        public int getIconHeight() {
+            Icon installed = UIManager.getIcon(LOOPING_KEY);
+            return (installed != this && installed != null) ? installed.getIconHeight() : 12;
+        }
+    }
+}
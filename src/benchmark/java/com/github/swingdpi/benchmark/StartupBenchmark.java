@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.swingdpi.UiScaling;
+
+/**
+ * Measures the time taken by the first call to {@link UiScaling#scale(int)}, which includes the
+ * class initialisation of the library, in a fresh JVM for each sample. This is done:
+ * <ul>
+ * <li>letting the library query the display (which initialises the AWT Toolkit),
+ * <li>with the scaling given by the {@link UiScaling#SCALING_PROPERTY} system property, and
+ * <li>with the scaling given by {@link UiScaling#initialize(int)}.
+ * </ul>
+ * Usage: {@code StartupBenchmark [samples]}
+ */
+public class StartupBenchmark {
+
+    private static final String CHILD_ARG = "--child";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && CHILD_ARG.equals(args[0])) {
+            runChild(args[1]);
+            return;
+        }
+        int samples = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+
+        report("display query", samples, "display");
+        report("system property", samples, "property",
+                "-D" + UiScaling.SCALING_PROPERTY + "=150");
+        report("initialize()", samples, "initialize");
+    }
+
+    private static void runChild(String mode) {
+        long start = System.nanoTime();
+        if ("initialize".equals(mode)) {
+            UiScaling.initialize(150);
+        }
+        int scaled = UiScaling.scale(16);
+        long elapsed = System.nanoTime() - start;
+
+        // Print the result too, so the work can't be optimised away
+        System.out.println(elapsed + " " + scaled);
+    }
+
+    private static void report(String label, int samples, String mode, String... jvmArgs)
+            throws IOException, InterruptedException {
+        long[] times = new long[samples];
+        for (int i = 0; i < samples; ++i) {
+            times[i] = runInFreshJvm(mode, jvmArgs);
+        }
+        Arrays.sort(times);
+        System.out.printf("%-16s median %8.2f ms, min %8.2f ms, max %8.2f ms%n", label,
+                times[samples / 2] / 1e6, times[0] / 1e6, times[samples - 1] / 1e6);
+    }
+
+    private static long runInFreshJvm(String mode, String... jvmArgs)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator +
+                "java");
+        command.addAll(Arrays.asList(jvmArgs));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StartupBenchmark.class.getName());
+        command.add(CHILD_ARG);
+        command.add(mode);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            if (process.waitFor() != 0 || line == null) {
+                throw new IllegalStateException("Benchmark process failed: " + line);
+            }
+            return Long.parseLong(line.split(" ")[0]);
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.benchmark;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.GridLayout;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.BoxLayout;
+import javax.swing.ButtonGroup;
+import javax.swing.Icon;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JEditorPane;
+import javax.swing.JFormattedTextField;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+import javax.swing.JPanel;
+import javax.swing.JPasswordField;
+import javax.swing.JProgressBar;
+import javax.swing.JRadioButton;
+import javax.swing.JScrollPane;
+import javax.swing.JSeparator;
+import javax.swing.JSlider;
+import javax.swing.JSpinner;
+import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.JToggleButton;
+import javax.swing.JToolBar;
+import javax.swing.JTree;
+import javax.swing.LookAndFeel;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.UIManager.LookAndFeelInfo;
+import javax.swing.table.DefaultTableModel;
+
+import com.github.swingdpi.DpiUtils;
+import com.github.swingdpi.UiDefaultsScaler;
+import com.github.swingdpi.util.ScaledTable;
+
+/**
+ * Measures the end-to-end cost of changing the scaling of a large window: a synthetic gallery of
+ * every kind of Swing component (with a long {@link ScaledTable}, icons and menus) built up to a
+ * given number of components. For each L&amp;F and each of the
+ * {@link DpiUtils#STANDARD_SCALINGS} this times, and counts the bytes allocated on the EDT by:
+ * <ul>
+ * <li>the defaults pass, {@link UiDefaultsScaler#updateAndApplyGlobalScaling(int, boolean)},
+ * <li>{@code updateUI}, via {@link SwingUtilities#updateComponentTreeUI(Component)},
+ * <li>laying out the whole tree at its new preferred size, and
+ * <li>the first paint of the whole window, into an offscreen image (painted in bands, to bound
+ * the memory used).
+ * </ul>
+ * The window is never shown, so this runs the same headless or under a virtual display such as
+ * Xvfb. Each L&amp;F is first taken through every scaling once, unmeasured, to warm up.
+ * <p>
+ * Usage: {@code UiScalingBenchmark [components] [look-and-feel class names...]}
+ * <br>
+ * By default about 10,000 components are used, with each installed L&amp;F that is supported.
+ */
+public class UiScalingBenchmark {
+
+    private static final String[] PHASES = { "defaults", "updateUI", "layout", "paint" };
+
+    private static final String[] ICON_KEYS = {
+            "OptionPane.informationIcon", "OptionPane.warningIcon", "FileView.directoryIcon",
+            "FileView.fileIcon", "Tree.openIcon", "Tree.leafIcon" };
+
+    private static final int TABLE_ROWS = 5000;
+    private static final int GALLERY_COLUMNS = 8;
+    private static final int PAINT_BAND_HEIGHT = 512;
+
+    private static final ThreadMXBean s_threads = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        final int components = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        final List<String> lafs = (args.length > 1)
+                ? Arrays.asList(args).subList(1, args.length)
+                : getSupportedLookAndFeels();
+
+        System.out.printf("%-10s %7s %10s", "L&F", "scaling", "components");
+        for (String phase : PHASES) {
+            System.out.printf(" %19s", phase + " ms / MB");
+        }
+        System.out.println();
+
+        for (final String laf : lafs) {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        benchmark(laf, components);
+                    } catch (Exception e) {
+                        System.out.println(laf + " failed: " + e);
+                    }
+                }
+            });
+        }
+    }
+
+    private static List<String> getSupportedLookAndFeels() throws Exception {
+        List<String> result = new ArrayList<String>();
+        for (LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
+            try {
+                Class<?> c = Class.forName(info.getClassName());
+                LookAndFeel laf = (LookAndFeel) c.getDeclaredConstructor().newInstance();
+                if (laf.isSupportedLookAndFeel()) {
+                    result.add(info.getClassName());
+                }
+            } catch (Exception e) {
+                System.out.println("Skipping " + info.getName() + ": " + e);
+            }
+        }
+        return result;
+    }
+
+    private static void benchmark(String laf, int components) throws Exception {
+        UIManager.setLookAndFeel(laf);
+        UiDefaultsScaler.updateAndApplyGlobalScaling(100, true);
+        JComponent gallery = createGallery(components);
+        int count = countComponents(gallery);
+
+        for (int scaling : DpiUtils.STANDARD_SCALINGS) {
+            measure(gallery, scaling);
+        }
+        for (int scaling : DpiUtils.STANDARD_SCALINGS) {
+            long[][] results = measure(gallery, scaling);
+            System.out.printf("%-10s %6d%% %10d", UIManager.getLookAndFeel().getName(),
+                    scaling, count);
+            for (long[] result : results) {
+                System.out.printf(" %9.1f / %7.1f", result[0] / 1e6, result[1] / 1e6);
+            }
+            System.out.println();
+        }
+        UiDefaultsScaler.updateAndApplyGlobalScaling(100, true);
+    }
+
+    /**
+     * @return the nanoseconds taken and the bytes allocated, for each phase
+     */
+    private static long[][] measure(JComponent gallery, int scaling) {
+        long[][] results = new long[PHASES.length][];
+
+        long[] start = sample();
+        UiDefaultsScaler.updateAndApplyGlobalScaling(scaling, true);
+        results[0] = since(start);
+
+        start = sample();
+        SwingUtilities.updateComponentTreeUI(gallery);
+        results[1] = since(start);
+
+        start = sample();
+        gallery.setSize(gallery.getPreferredSize());
+        layout(gallery);
+        results[2] = since(start);
+
+        start = sample();
+        paint(gallery);
+        results[3] = since(start);
+
+        return results;
+    }
+
+    private static long[] sample() {
+        return new long[] { System.nanoTime(), getAllocatedBytes() };
+    }
+
+    private static long[] since(long[] start) {
+        long[] now = sample();
+        return new long[] { now[0] - start[0], now[1] - start[1] };
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or 0 if the JVM can't tell us.
+     */
+    private static long getAllocatedBytes() {
+        if (s_threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) s_threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Lays out the whole tree, as a window's validation would, except that it need not be
+     * displayable.
+     */
+    private static void layout(Component c) {
+        if (c instanceof Container) {
+            Container container = (Container) c;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layout(child);
+            }
+        }
+    }
+
+    private static void paint(JComponent c) {
+        int width = Math.max(1, c.getWidth());
+        int height = Math.max(1, c.getHeight());
+        BufferedImage band = new BufferedImage(width, Math.min(height, PAINT_BAND_HEIGHT),
+                BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y += PAINT_BAND_HEIGHT) {
+            Graphics2D g = band.createGraphics();
+            try {
+                g.translate(0, -y);
+                g.clipRect(0, y, width, PAINT_BAND_HEIGHT);
+                c.paint(g);
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+
+    private static int countComponents(Component c) {
+        int count = 1;
+        if (c instanceof JMenu) {
+            for (Component item : ((JMenu) c).getMenuComponents()) {
+                count += countComponents(item);
+            }
+        }
+        if (c instanceof Container) {
+            for (Component child : ((Container) c).getComponents()) {
+                count += countComponents(child);
+            }
+        }
+        return count;
+    }
+
+    private static JComponent createGallery(int components) {
+        JPanel sections = new JPanel(new GridLayout(0, GALLERY_COLUMNS));
+        JPanel gallery = new JPanel(new BorderLayout());
+        gallery.add(createMenuBar(), BorderLayout.NORTH);
+        gallery.add(sections, BorderLayout.CENTER);
+        gallery.add(new JScrollPane(createTable()), BorderLayout.SOUTH);
+
+        while (countComponents(gallery) < components) {
+            sections.add(createSection(sections.getComponentCount()));
+        }
+        return gallery;
+    }
+
+    private static JMenuBar createMenuBar() {
+        JMenuBar bar = new JMenuBar();
+        for (String name : new String[] { "File", "Edit", "View", "Tools", "Help" }) {
+            JMenu menu = new JMenu(name);
+            for (int i = 0; i < 10; i++) {
+                JMenuItem item = new JMenuItem(name + " item " + i, getIcon(i));
+                menu.add(item);
+            }
+            menu.addSeparator();
+            JMenu submenu = new JMenu("More");
+            submenu.add(new JMenuItem("Nested"));
+            menu.add(submenu);
+            bar.add(menu);
+        }
+        return bar;
+    }
+
+    private static ScaledTable createTable() {
+        DefaultTableModel model = new DefaultTableModel(
+                new Object[] { "Icon", "Name", "Size", "Enabled", "Notes" }, 0) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                switch (column) {
+                case 0: return Icon.class;
+                case 2: return Integer.class;
+                case 3: return Boolean.class;
+                default: return String.class;
+                }
+            }
+        };
+        for (int row = 0; row < TABLE_ROWS; row++) {
+            model.addRow(new Object[] {
+                    getIcon(row), "Row " + row, row * 17, (row % 3) == 0, "Notes for " + row });
+        }
+        ScaledTable table = new ScaledTable(model);
+        table.setAutoCreateRowSorter(true);
+        return table;
+    }
+
+    private static JPanel createSection(int index) {
+        JPanel section = new JPanel();
+        section.setLayout(new BoxLayout(section, BoxLayout.Y_AXIS));
+
+        JToolBar toolBar = new JToolBar();
+        for (int i = 0; i < 4; i++) {
+            toolBar.add(new JButton(getIcon(index + i)));
+        }
+        section.add(toolBar);
+
+        section.add(new JLabel("Section " + index, getIcon(index), JLabel.LEADING));
+        section.add(new JButton("Button", getIcon(index + 1)));
+        section.add(new JToggleButton("Toggle"));
+        section.add(new JCheckBox("Check box", true));
+        ButtonGroup group = new ButtonGroup();
+        for (int i = 0; i < 2; i++) {
+            JRadioButton radio = new JRadioButton("Radio " + i, i == 0);
+            group.add(radio);
+            section.add(radio);
+        }
+        section.add(new JComboBox<String>(new String[] { "One", "Two", "Three" }));
+        section.add(new JTextField("Text field"));
+        section.add(new JFormattedTextField(Integer.valueOf(index)));
+        section.add(new JPasswordField("secret"));
+        section.add(new JSpinner());
+        section.add(createSlider());
+        JProgressBar progress = new JProgressBar();
+        progress.setValue(index % 100);
+        progress.setStringPainted(true);
+        section.add(progress);
+        section.add(new JSeparator());
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Text", getIcon(index), new JScrollPane(new JTextArea("Some text\n", 3, 12)));
+        tabs.addTab("List", new JScrollPane(
+                new JList<String>(new String[] { "Alpha", "Beta", "Gamma", "Delta" })));
+        tabs.addTab("Tree", new JScrollPane(new JTree()));
+        section.add(tabs);
+
+        JEditorPane html = new JEditorPane("text/html", "<b>Editor</b> <i>pane</i>");
+        section.add(new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, html, new JLabel("Split")));
+        return section;
+    }
+
+    /**
+     * Synth's sliders ask for the mouse position while installing, which fails when headless.
+     */
+    private static JSlider createSlider() {
+        return new JSlider() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Point getMousePosition() {
+                return GraphicsEnvironment.isHeadless() ? null : super.getMousePosition();
+            }
+        };
+    }
+
+    private static Icon getIcon(int index) {
+        return new DefaultsIcon(ICON_KEYS[index % ICON_KEYS.length]);
+    }
+
+    /**
+     * An icon of the current defaults, fetched on each use so that it follows the scaling being
+     * measured (as an application's icons would) rather than staying at the one it was created at.
+     */
+    private static final class DefaultsIcon implements Icon {
+        private final String key;
+
+        DefaultsIcon(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            Icon icon = UIManager.getIcon(key);
+            if (icon != null) {
+                icon.paintIcon(c, g, x, y);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            Icon icon = UIManager.getIcon(key);
+            return (icon == null) ? 0 : icon.getIconWidth();
+        }
+
+        @Override
+        public int getIconHeight() {
+            Icon icon = UIManager.getIcon(key);
+            return (icon == null) ? 0 : icon.getIconHeight();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Rectangle;
+
+/**
+ * An immutable description of one display (monitor), as provided by a {@link DisplayProvider}.
+ */
+public final class DisplayInfo {
+
+    private final String id;
+    private final Rectangle bounds;
+    private final int dpi;
+    private final double transformScale;
+    private final boolean primary;
+
+    /**
+     * @param id a unique identifier, matching {@code GraphicsDevice#getIDstring()} for real devices
+     * @param bounds the display's bounds in the virtual (user-space) screen coordinates
+     * @param dpi the display's resolution, where 96 represents 100% scaling
+     * @param transformScale the scale of the display's default transform, which Java applies
+     *        itself (always 1 unless Java's own HiDPI support is active)
+     * @param primary whether this is the primary display
+     */
+    public DisplayInfo(String id, Rectangle bounds, int dpi, double transformScale,
+            boolean primary) {
+        this.id = id;
+        this.bounds = new Rectangle(bounds);
+        this.dpi = dpi;
+        this.transformScale = transformScale;
+        this.primary = primary;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * @return the area of overlap between the given rectangle and this display, in square pixels.
+     */
+    public long getIntersectionArea(Rectangle r) {
+        Rectangle i = bounds.intersection(r);
+        return (i.isEmpty()) ? 0 : (long) i.width * i.height;
+    }
+
+    public int getDpi() {
+        return dpi;
+    }
+
+    public double getTransformScale() {
+        return transformScale;
+    }
+
+    public boolean isPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return the display's scaling as an integer percentage, derived from its DPI.
+     */
+    public int getScaling() {
+        return Math.round((dpi * 100f) / DpiUtils.UNSCALED_DPI);
+    }
+
+    @Override
+    public String toString() {
+        return "DisplayInfo[" + id + ", " + bounds.x + "," + bounds.y + " " + bounds.width + "x" +
+                bounds.height + ", " + dpi + " DPI, transform " + transformScale +
+                (primary ? ", primary]" : "]");
+    }
+}
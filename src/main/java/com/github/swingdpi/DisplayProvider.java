@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.util.List;
+
+/**
+ * Supplies the current display layout to the {@link DisplayRegistry}. The default implementation
+ * queries the {@code GraphicsEnvironment}; alternatives can be plugged in to query the OS
+ * directly (e.g. for true per-monitor DPI on JDK 8) or to simulate multi-monitor layouts in tests.
+ */
+public interface DisplayProvider {
+
+    /**
+     * Called (infrequently) whenever the registry is refreshed.
+     *
+     * @return all current displays, or an empty list if there are none (e.g. when headless).
+     */
+    List<DisplayInfo> getDisplays();
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Component;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * A cached registry of the displays (monitors) attached to the system, with their bounds, DPI and
+ * scaling. Lookups are cheap enough to use while painting: the registry only queries the system
+ * when it is refreshed, which happens when the system reports a display change, or when a
+ * component is found on a device not seen before.
+ * <p>
+ * Note that on JDK 8 Java reports the same (system) DPI for every display. A custom
+ * {@link DisplayProvider} can be installed to report true per-monitor values, or to simulate
+ * multi-monitor layouts for testing on a headless machine.
+ */
+public final class DisplayRegistry {
+    private DisplayRegistry() {}
+
+    private static final DisplayProvider DEFAULT_PROVIDER = new GraphicsEnvironmentProvider();
+
+    private static volatile DisplayProvider s_provider = DEFAULT_PROVIDER;
+
+    /** Null until first used, then replaced wholesale by each refresh. */
+    private static volatile Snapshot s_snapshot = null;
+
+    /**
+     * Threading: all access must synchronize on this final member
+     */
+    private static final List<ChangeListener> s_changeListeners = new ArrayList<ChangeListener>();
+
+    /**
+     * Installs a provider, or restores the default one if {@code null}, and refreshes.
+     */
+    public static void setProvider(DisplayProvider provider) {
+        s_provider = (provider == null) ? DEFAULT_PROVIDER : provider;
+        refresh();
+    }
+
+    /**
+     * Re-queries the provider and notifies listeners. This is done automatically when possible,
+     * but can also be called if the application learns of a display change by other means.
+     */
+    public static void refresh() {
+        s_snapshot = new Snapshot(s_provider.getDisplays());
+        notifyListeners();
+    }
+
+    public static List<DisplayInfo> getDisplays() {
+        return getSnapshot().displays;
+    }
+
+    /**
+     * @return the primary display, or {@code null} if there are no displays (e.g. headless).
+     */
+    public static DisplayInfo getPrimaryDisplay() {
+        return getSnapshot().primary;
+    }
+
+    /**
+     * @return the display which the component is shown on. If it is not yet displayable, this
+     *         falls back to the display holding most of its bounds, then the primary display.
+     */
+    public static DisplayInfo getDisplay(Component c) {
+        Snapshot snapshot = getSnapshot();
+        GraphicsConfiguration gc = (c == null) ? null : c.getGraphicsConfiguration();
+        if (gc != null && s_provider == DEFAULT_PROVIDER) {
+            String id = gc.getDevice().getIDstring();
+            DisplayInfo display = snapshot.byId.get(id);
+            if (display == null) {
+
+                // A device we've not seen: the layout must have changed without us hearing.
+                refresh();
+                display = getSnapshot().byId.get(id);
+            }
+            if (display != null) {
+                return display;
+            }
+        }
+        if (c != null && c.isShowing()) {
+            return getDisplay(new Rectangle(c.getLocationOnScreen(), c.getSize()));
+        }
+        return snapshot.primary;
+    }
+
+    /**
+     * @return the display holding the largest part of the given screen area, or the primary
+     *         display if none of them intersect it.
+     */
+    public static DisplayInfo getDisplay(Rectangle screenBounds) {
+        Snapshot snapshot = getSnapshot();
+        DisplayInfo best = snapshot.primary;
+        long bestArea = 0;
+        for (DisplayInfo display : snapshot.displays) {
+            long area = display.getIntersectionArea(screenBounds);
+            if (area > bestArea) {
+                bestArea = area;
+                best = display;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the scaling of the display which the component is on, as an integer percentage.
+     */
+    public static int getScaling(Component c) {
+        DisplayInfo display = getDisplay(c);
+        return (display == null) ? 100 : display.getScaling();
+    }
+
+    /**
+     * Be notified when the display layout has changed. Listeners are notified on the EDT.
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        synchronized (s_changeListeners) {
+            s_changeListeners.add(listener);
+        }
+    }
+
+    public static void removeChangeListener(ChangeListener listener) {
+        synchronized (s_changeListeners) {
+            s_changeListeners.remove(listener);
+        }
+    }
+
+    private static void notifyListeners() {
+        final List<ChangeListener> listeners;
+        synchronized (s_changeListeners) {
+            if (s_changeListeners.isEmpty()) {
+                return;
+            }
+            listeners = new ArrayList<ChangeListener>(s_changeListeners);
+        }
+        Runnable notify = new Runnable() {
+            @Override
+            public void run() {
+                for (ChangeListener changeListener : listeners) {
+                    changeListener.stateChanged(new ChangeEvent(DisplayRegistry.class));
+                }
+            }
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            notify.run();
+        } else {
+            SwingUtilities.invokeLater(notify);
+        }
+    }
+
+    private static Snapshot getSnapshot() {
+        Snapshot snapshot = s_snapshot;
+        if (snapshot == null) {
+            snapshot = new Snapshot(s_provider.getDisplays());
+            s_snapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    private static final class Snapshot {
+        final List<DisplayInfo> displays;
+        final Map<String, DisplayInfo> byId = new HashMap<String, DisplayInfo>();
+        final DisplayInfo primary;
+
+        Snapshot(List<DisplayInfo> displays) {
+            this.displays = Collections.unmodifiableList(new ArrayList<DisplayInfo>(displays));
+            DisplayInfo found = null;
+            for (DisplayInfo display : displays) {
+                byId.put(display.getId(), display);
+                if (display.isPrimary() || found == null) {
+                    found = display;
+                }
+            }
+            primary = found;
+        }
+    }
+
+    /**
+     * Queries the displays from Java's {@code GraphicsEnvironment}. The primary display's DPI is
+     * that reported by the Toolkit; others are derived from their transform relative to it.
+     */
+    private static final class GraphicsEnvironmentProvider implements DisplayProvider {
+
+        /** Strongly held, since the JDK only holds display-change listeners weakly. */
+        private Object displayChangeListener;
+
+        @Override
+        public synchronized List<DisplayInfo> getDisplays() {
+            if (GraphicsEnvironment.isHeadless()) {
+                return Collections.emptyList();
+            }
+            GraphicsEnvironment env = GraphicsEnvironment.getLocalGraphicsEnvironment();
+            listenForDisplayChanges(env);
+
+            GraphicsDevice primaryDevice = env.getDefaultScreenDevice();
+            double primaryScale =
+                    primaryDevice.getDefaultConfiguration().getDefaultTransform().getScaleX();
+            int primaryDpi = Toolkit.getDefaultToolkit().getScreenResolution();
+
+            List<DisplayInfo> result = new ArrayList<DisplayInfo>();
+            for (GraphicsDevice device : env.getScreenDevices()) {
+                if (device.getType() != GraphicsDevice.TYPE_RASTER_SCREEN) {
+                    continue;
+                }
+                GraphicsConfiguration gc = device.getDefaultConfiguration();
+                double scale = gc.getDefaultTransform().getScaleX();
+                boolean primary = (device == primaryDevice);
+                int dpi = primary ? primaryDpi : (int) Math.round(primaryDpi * scale / primaryScale);
+                result.add(new DisplayInfo(device.getIDstring(), gc.getBounds(), dpi, scale,
+                        primary));
+            }
+            return result;
+        }
+
+        /**
+         * There's no public API for this, but the JDK's own implementation offers one. If it's
+         * not accessible (e.g. due to module encapsulation) we rely on detecting new devices.
+         */
+        private void listenForDisplayChanges(GraphicsEnvironment env) {
+            if (displayChangeListener != null) {
+                return;
+            }
+            try {
+                Class<?> listenerClass = Class.forName("sun.awt.DisplayChangedListener");
+                Method add = env.getClass().getMethod("addDisplayChangedListener", listenerClass);
+                Object listener = Proxy.newProxyInstance(
+                        listenerClass.getClassLoader(),
+                        new Class<?>[] { listenerClass },
+                        new InvocationHandler() {
+                            @Override
+                            public Object invoke(Object proxy, Method method, Object[] args) {
+                                String name = method.getName();
+                                if ("displayChanged".equals(name)) {
+                                    refresh();
+                                } else if ("hashCode".equals(name)) {
+                                    return System.identityHashCode(proxy);
+                                } else if ("equals".equals(name)) {
+                                    return proxy == args[0];
+                                } else if ("toString".equals(name)) {
+                                    return DisplayRegistry.class.getName() + "$Listener";
+                                }
+                                return null;
+                            }
+                        });
+                add.invoke(env, listener);
+                displayChangeListener = listener;
+            } catch (Exception ignored) {
+                // Not available: we'll just have to notice changes by other means.
+                displayChangeListener = Boolean.FALSE;
+            } catch (LinkageError ignored) {
+                displayChangeListener = Boolean.FALSE;
+            }
+        }
+    }
+}
@@ -20,9 +20,6 @@
 
 package com.github.swingdpi;
 
-import java.awt.GraphicsEnvironment;
-import java.awt.Toolkit;
-
 import com.github.swingdpi.plaf.JavaVersion;
 
 public class DpiUtils {
@@ -33,7 +30,7 @@ public class DpiUtils {
      * A scaling level of 100% represents 96 DPI on a 'typical' (2000-2010 era) monitor. (This value
      * is assumed by Windows. As far as screens go, DPI doesn't really represent inches at all.)
      */
-    private static final int UNSCALED_DPI = 96;
+    static final int UNSCALED_DPI = 96;
 
     public static int getClosestStandardScaling() {
         return closest(getSystemScaling(), STANDARD_SCALINGS);
@@ -74,17 +71,14 @@ public class DpiUtils {
      *
      *   https://blogs.technet.microsoft.com/askcore/2015/12/08/display-scaling-in-windows-10/
      *
-     * As this method entails a native OS call, I don't know how expensive that call might be.
-     * Probably best to avoid calling this in performance-critical areas, like painting.
+     * The underlying native OS call is made only when the {@link DisplayRegistry} is refreshed,
+     * so this method is cheap to call.
      *
      * @return The Java-version-independent scaling of the PRIMARY screen as an integer percentage
      */
     public static int getJavaIndependentScreenScaling() {
-        if (GraphicsEnvironment.isHeadless()) {
-            return 100;
-        }
-        int dpi = Toolkit.getDefaultToolkit().getScreenResolution();
-        return Math.round((dpi * 100f) / UNSCALED_DPI);
+        DisplayInfo primary = DisplayRegistry.getPrimaryDisplay();
+        return (primary == null) ? 100 : primary.getScaling();
     }
 
     private static int closest(int of, int[] in) {
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+import javax.swing.UIDefaults;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Optionally "warms up" the fonts of the UI defaults on a background thread, after the scaling
+ * has changed. Each scaled font is a new font, so without this the first paint of each text
+ * component would build its glyph images and font metrics on the EDT.
+ * <p>
+ * Warming lays out and draws a set of characters in each font, to an offscreen image with the
+ * desktop's text rendering hints, so that Java2D's shared glyph and metrics caches are populated.
+ * It is disabled by default; when enabled it runs after each call to
+ * {@link UiDefaultsScaler#updateAndApplyGlobalScaling(int, boolean)}.
+ */
+public final class FontWarmer {
+    private FontWarmer() {}
+
+    /** Printable ASCII, plus some punctuation and symbols common in UI text. */
+    public static final String DEFAULT_CHARACTERS = createDefaultCharacters();
+
+    private static volatile boolean s_enabled = false;
+
+    private static volatile String s_characters = DEFAULT_CHARACTERS;
+
+    /** Incremented by each warm-up, so that a superseded one can stop early. */
+    private static final AtomicInteger s_generation = new AtomicInteger();
+
+    private static volatile long s_lastDurationMillis = -1;
+
+    /**
+     * Threading: all access must synchronize on this final member
+     */
+    private static final List<ChangeListener> s_changeListeners = new ArrayList<ChangeListener>();
+
+    private static String createDefaultCharacters() {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 0x20; c < 0x7f; c++) {
+            sb.append(c);
+        }
+        sb.append("\u00a0\u00a9\u00ae\u00b0\u00b1\u00b5\u00d7\u00f7");
+        sb.append("\u2013\u2014\u2018\u2019\u201c\u201d\u2022\u2026\u20ac\u2190\u2192\u2713");
+        return sb.toString();
+    }
+
+    public static boolean isEnabled() {
+        return s_enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        s_enabled = enabled;
+    }
+
+    public static String getCharacters() {
+        return s_characters;
+    }
+
+    /**
+     * Sets the characters to lay out in each font, e.g. to add those of the application's
+     * languages. Takes effect from the next warm-up.
+     */
+    public static void setCharacters(String characters) {
+        s_characters = (characters == null) ? DEFAULT_CHARACTERS : characters;
+    }
+
+    /**
+     * @return the duration of the last completed warm-up in milliseconds, or -1 if none has
+     *         completed yet.
+     */
+    public static long getLastDurationMillis() {
+        return s_lastDurationMillis;
+    }
+
+    /**
+     * Starts warming the distinct fonts in the given defaults in the background, superseding any
+     * warm-up still running. This is called automatically (if enabled) when the global scaling
+     * is applied, but may also be called directly.
+     */
+    public static void warmUp(UIDefaults defaults) {
+        assert SwingUtilities.isEventDispatchThread();
+
+        // Collected here, since resolving lazy defaults off the EDT would not be safe. Only the
+        // values which are, or are keyed as, fonts are resolved; not the painters, icons etc.
+        final Set<Font> fonts = new LinkedHashSet<Font>();
+        List<Object> lazyFontKeys = new ArrayList<Object>();
+        for (Map.Entry<Object, Object> entry : defaults.entrySet()) {
+            if (entry.getValue() instanceof Font) {
+                fonts.add((Font) entry.getValue());
+            } else if (isFontKey(entry.getKey())) {
+                lazyFontKeys.add(entry.getKey());
+            }
+        }
+        for (Object key : lazyFontKeys) {
+            Object value = defaults.get(key);
+            if (value instanceof Font) {
+                fonts.add((Font) value);
+            }
+        }
+        final Map<?, ?> hints = getDesktopHints();
+        final AffineTransform deviceTransform = getDeviceTransform();
+        final String characters = s_characters;
+        final int generation = s_generation.incrementAndGet();
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                if (warmUp(fonts, hints, deviceTransform, characters, generation)) {
+                    s_lastDurationMillis = (System.nanoTime() - start) / 1000000;
+                    notifyListeners();
+                }
+            }
+        }, "swing-dpi font warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @return whether a key names a font by the usual convention, e.g. "Button.font" or
+     *         "defaultFont", so that a lazy or active value under it is worth resolving.
+     */
+    private static boolean isFontKey(Object key) {
+        return key instanceof String && ((String) key).toLowerCase(Locale.ROOT).endsWith("font");
+    }
+
+    /**
+     * @return whether all fonts were warmed, i.e. the warm-up was not superseded.
+     */
+    private static boolean warmUp(Set<Font> fonts, Map<?, ?> hints,
+            AffineTransform deviceTransform, String characters, int generation) {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        for (Font font : fonts) {
+            if (s_generation.get() != generation) {
+                return false;
+            }
+            Graphics2D g = image.createGraphics();
+            try {
+                if (hints != null) {
+                    g.addRenderingHints(hints);
+                }
+                g.transform(deviceTransform);
+                g.setFont(font);
+                FontMetrics metrics = g.getFontMetrics();
+                metrics.stringWidth(characters);
+                metrics.getStringBounds(characters, g);
+                g.drawString(characters, 0, metrics.getAscent());
+            } finally {
+                g.dispose();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the hints which Swing renders text with, or {@code null} if there are none.
+     */
+    private static Map<?, ?> getDesktopHints() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+        Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        return (hints instanceof Map) ? (Map<?, ?>) hints : null;
+    }
+
+    /**
+     * Glyphs are cached per device transform, so match the one the screen uses (which may
+     * include Java's own scaling, from Java 9).
+     */
+    private static AffineTransform getDeviceTransform() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new AffineTransform();
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().getDefaultTransform();
+    }
+
+    /**
+     * Be notified when a warm-up has completed. Listeners are notified on the EDT.
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        synchronized (s_changeListeners) {
+            s_changeListeners.add(listener);
+        }
+    }
+
+    public static void removeChangeListener(ChangeListener listener) {
+        synchronized (s_changeListeners) {
+            s_changeListeners.remove(listener);
+        }
+    }
+
+    private static void notifyListeners() {
+        final List<ChangeListener> listeners;
+        synchronized (s_changeListeners) {
+            if (s_changeListeners.isEmpty()) {
+                return;
+            }
+            listeners = new ArrayList<ChangeListener>(s_changeListeners);
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                for (ChangeListener changeListener : listeners) {
+                    changeListener.stateChanged(new ChangeEvent(FontWarmer.class));
+                }
+            }
+        });
+    }
+}
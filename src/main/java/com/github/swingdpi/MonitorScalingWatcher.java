@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.event.WindowListener;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.RootPaneContainer;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Rescales a window when it is moved to a display with a different scaling, for Java versions
+ * where Java doesn't do this itself (i.e. when {@link DpiUtils#isPerMonitorDpiActive()} is false).
+ * Only the watched window is rebuilt, using a {@link ScaleContext}.
+ * <p>
+ * The contexts are shared by all watched windows and prepared in advance for each display, so
+ * that switching is quick. To avoid thrashing, a window must have settled (stopped moving) and
+ * the majority of it must lie on the new display before it is switched.
+ * <p>
+ * Displays are found using the {@link DisplayRegistry}, so the behaviour can be tested with a
+ * simulated layout via {@link DisplayRegistry#setProvider(DisplayProvider)}. Note that by default
+ * on JDK 8, Java reports the same DPI for all displays, so a provider reporting real per-monitor
+ * values is needed for this to have any effect.
+ */
+public final class MonitorScalingWatcher {
+
+    /** The fraction of a window which must lie on another display before it switches. */
+    private static final double SWITCH_THRESHOLD = 0.6;
+
+    private static final int SETTLE_DELAY_MS = 250;
+
+    /**
+     * Contexts by scaling level, shared so each is only built once. Accessed on the EDT only.
+     * Keys are negated for contexts without the extra tweaks.
+     */
+    private static final Map<Integer, ScaleContext> s_contexts =
+            new HashMap<Integer, ScaleContext>();
+
+    /** The installed watchers. The contexts are released when the last is uninstalled. */
+    private static final Set<MonitorScalingWatcher> s_watchers =
+            new HashSet<MonitorScalingWatcher>();
+
+    private final Window window;
+    private final RootPaneContainer rootPaneContainer;
+    private final boolean alsoTweak;
+    private final Timer settleTimer;
+    private final ComponentListener componentListener;
+    private final WindowListener windowListener;
+    private final ChangeListener displayListener;
+
+    private DisplayInfo currentDisplay;
+
+    /** The size set by {@link #applyScaling(int)}, whose resize event is to be ignored. */
+    private Dimension appliedSize;
+
+    private <T extends Window & RootPaneContainer> MonitorScalingWatcher(
+            T window, boolean alsoTweak) {
+        this.window = window;
+        this.rootPaneContainer = window;
+        this.alsoTweak = alsoTweak;
+
+        settleTimer = new Timer(SETTLE_DELAY_MS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                checkDisplay();
+            }
+        });
+        settleTimer.setRepeats(false);
+
+        componentListener = new ComponentAdapter() {
+            @Override
+            public void componentMoved(ComponentEvent e) {
+                settleTimer.restart();
+            }
+
+            @Override
+            public void componentResized(ComponentEvent e) {
+                // Our own resizing, when switching, mustn't trigger another check
+                if (appliedSize != null && appliedSize.equals(e.getComponent().getSize())) {
+                    appliedSize = null;
+                    return;
+                }
+                settleTimer.restart();
+            }
+
+            @Override
+            public void componentShown(ComponentEvent e) {
+                settleTimer.restart();
+            }
+        };
+
+        windowListener = new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                uninstall();
+            }
+        };
+
+        displayListener = new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                prepareContexts();
+                settleTimer.restart();
+            }
+        };
+    }
+
+    /**
+     * Starts watching a window. Does nothing (and returns null) if Java is handling per-monitor
+     * scaling itself.
+     *
+     * @param alsoTweak as per {@link UiDefaultsScaler#updateAndApplyGlobalScaling(int, boolean)}
+     */
+    public static <T extends Window & RootPaneContainer> MonitorScalingWatcher install(
+            T window, boolean alsoTweak) {
+        assert SwingUtilities.isEventDispatchThread();
+
+        if (DpiUtils.isPerMonitorDpiActive()) {
+            return null;
+        }
+        MonitorScalingWatcher watcher = new MonitorScalingWatcher(window, alsoTweak);
+        watcher.prepareContexts();
+        window.addComponentListener(watcher.componentListener);
+        window.addWindowListener(watcher.windowListener);
+        s_watchers.add(watcher);
+        DisplayRegistry.addChangeListener(watcher.displayListener);
+        watcher.checkDisplay();
+        return watcher;
+    }
+
+    /**
+     * Stops watching the window. This is done automatically when the window is disposed.
+     */
+    public void uninstall() {
+        assert SwingUtilities.isEventDispatchThread();
+
+        settleTimer.stop();
+        window.removeComponentListener(componentListener);
+        window.removeWindowListener(windowListener);
+        DisplayRegistry.removeChangeListener(displayListener);
+        if (s_watchers.remove(this) && s_watchers.isEmpty()) {
+            s_contexts.clear();
+        }
+    }
+
+    private void prepareContexts() {
+        for (DisplayInfo display : DisplayRegistry.getDisplays()) {
+            ScaleContext context = getContext(getScalingFor(display));
+            if (context != null) {
+                context.prepare();
+            }
+        }
+    }
+
+    private void checkDisplay() {
+        if (!window.isShowing()) {
+            return;
+        }
+        Rectangle bounds = window.getBounds();
+        DisplayInfo candidate = DisplayRegistry.getDisplay(bounds);
+        if (candidate == null || isSameDisplay(candidate, currentDisplay)) {
+            return;
+        }
+
+        // Hysteresis: don't switch while straddling two displays, unless we've been displaced.
+        long windowArea = (long) bounds.width * bounds.height;
+        boolean stillOnCurrent = currentDisplay != null &&
+                currentDisplay.getIntersectionArea(bounds) > 0;
+        if (stillOnCurrent &&
+                candidate.getIntersectionArea(bounds) < windowArea * SWITCH_THRESHOLD) {
+            return;
+        }
+        currentDisplay = candidate;
+        applyScaling(getScalingFor(candidate));
+    }
+
+    private static boolean isSameDisplay(DisplayInfo a, DisplayInfo b) {
+        return b != null && a.getId().equals(b.getId()) && a.getDpi() == b.getDpi();
+    }
+
+    private void applyScaling(int scaling) {
+        ScaleContext current = ScaleContext.get(window);
+        int oldScaling = (current == null) ? UiScaling.getScaling() : current.getScaling();
+        ScaleContext wanted = getContext(scaling);
+        if (wanted == current) {
+            return;
+        }
+        ScaleContext.install(rootPaneContainer, wanted);
+
+        // Like native per-monitor-aware apps, keep the window the same size relative to its content
+        Dimension size = window.getSize();
+        appliedSize = new Dimension(
+                size.width * scaling / oldScaling, size.height * scaling / oldScaling);
+        window.setSize(appliedSize);
+        window.validate();
+    }
+
+    /**
+     * Applies the display's scaling relative to the primary display, so that any scaling chosen
+     * by the user (relative to the primary display) is preserved.
+     */
+    private static int getScalingFor(DisplayInfo display) {
+        DisplayInfo primary = DisplayRegistry.getPrimaryDisplay();
+        int primaryScaling = (primary == null) ? 100 : primary.getScaling();
+        return DpiUtils.getClosestStandardScaling(
+                UiScaling.getScaling() * display.getScaling() / primaryScaling);
+    }
+
+    /**
+     * @return the shared context for the scaling, or null if it matches the global scaling.
+     */
+    private ScaleContext getContext(int scaling) {
+        if (scaling == UiScaling.getScaling()) {
+            return null;
+        }
+        Integer key = alsoTweak ? scaling : -scaling;
+        ScaleContext context = s_contexts.get(key);
+        if (context == null) {
+            context = new ScaleContext(scaling, alsoTweak);
+            s_contexts.put(key, context);
+        }
+        return context;
+    }
+}
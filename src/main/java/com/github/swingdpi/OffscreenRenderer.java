@@ -0,0 +1,545 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * Renders component trees to images at a scaling other than the one in use on screen, for
+ * example to export a 300% screenshot of a form for documentation, or for a print preview.
+ * Neither the global scaling nor the {@link javax.swing.UIManager} defaults are changed.
+ * <p>
+ * An existing component is laid out at its usual (logical) size, using the values which the
+ * tweakers installed for the current scaling, and is then painted through a {@link Graphics2D}
+ * scaled by the ratio of the requested scaling to that current scaling. Text and vector graphics
+ * are therefore drawn at the full output resolution; raster icons are resampled by the transform.
+ * <p>
+ * Trees built by a {@link ComponentFactory} are instead built at the requested scaling, under the
+ * defaults of a {@link ScaleContext}, so their icons are rasterized at that scaling too. They are
+ * built and painted on the EDT, like any other Swing component: painting shares state between
+ * components (UI delegates, and caches within Swing itself) so is never done in parallel. When
+ * streaming a PNG, the tree is painted a band at a time, and only the encoding and compression
+ * of the bands is done in parallel, while the EDT paints the next ones. The trees are never
+ * shown, and are painted without double-buffering, which would involve the
+ * {@link javax.swing.RepaintManager}.
+ */
+public final class OffscreenRenderer {
+    private OffscreenRenderer() {}
+
+    /** The height, in output pixels, of the bands which are painted and compressed together. */
+    public static final int BAND_HEIGHT = 256;
+
+    /** The context of the last factory render. Accessed on the EDT only. */
+    private static ScaleContext s_lastContext;
+    private static boolean s_lastContextTweaks;
+
+    /**
+     * Builds the component tree to render. It is called on the EDT.
+     */
+    public interface ComponentFactory {
+        JComponent createComponent();
+    }
+
+    /**
+     * Renders a component on the calling thread, which must be the EDT if the component is
+     * realized. Components which have no size are laid out at their preferred size.
+     *
+     * @param scalingInPercent the scaling of the output, where 100 represents 96 DPI
+     */
+    public static BufferedImage render(JComponent c, int scalingInPercent) {
+        Dimension size = layout(c, null);
+        float factor = getRelativeFactor(c, scalingInPercent);
+        BufferedImage image = createImage(size, factor);
+        paintBand(c, image, 0, image.getHeight(), factor);
+        return image;
+    }
+
+    /**
+     * Builds a component tree at the given scaling, and renders it. This may be called on any
+     * thread; the tree is built and painted on the EDT.
+     *
+     * @param scalingInPercent the scaling of the output, where 100 represents 96 DPI
+     */
+    public static BufferedImage render(final ComponentFactory factory,
+            final int scalingInPercent) throws InterruptedException {
+        checkScaling(scalingInPercent);
+        final BufferedImage[] image = new BufferedImage[1];
+        runOnEdt(new Runnable() {
+            @Override
+            public void run() {
+                JComponent c = createTree(factory, scalingInPercent);
+                image[0] = createImage(c.getSize(), 1f);
+                paintBand(c, image[0], 0, image[0].getHeight(), 1f);
+            }
+        });
+        return image[0];
+    }
+
+    /**
+     * Builds a component tree at the given scaling, and streams it as a PNG. Only a few bands
+     * are held in memory at any time, so the output may be much larger than could be rendered
+     * into a single image. The stream is not closed.
+     * <p>
+     * This may be called on any thread. The bands are painted on the EDT (which remains
+     * responsive between them, unless this is called on the EDT) and compressed in parallel.
+     *
+     * @param scalingInPercent the scaling of the output, where 100 represents 96 DPI
+     * @param threads the number of worker threads with which to compress the bands
+     */
+    public static void writePng(final ComponentFactory factory, final int scalingInPercent,
+            int threads, OutputStream out) throws IOException, InterruptedException {
+        checkScaling(scalingInPercent);
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads: " + threads);
+        }
+        final JComponent[] tree = new JComponent[1];
+        runOnEdt(new Runnable() {
+            @Override
+            public void run() {
+                tree[0] = createTree(factory, scalingInPercent);
+            }
+        });
+        Dimension size = tree[0].getSize();
+        int width = Math.max(1, size.width);
+        int height = Math.max(1, size.height);
+
+        PngWriter png = new PngWriter(out, width, height);
+        ExecutorService executor = createExecutor(threads);
+        try {
+            // Keep just enough bands in flight to occupy every thread, writing them in order
+            int bandCount = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+            List<Future<PngWriter.Band>> pending = new ArrayList<Future<PngWriter.Band>>();
+            int painted = 0;
+            for (int written = 0; written < bandCount; written++) {
+                while (painted < bandCount && painted < written + threads * 2) {
+                    int y = painted * BAND_HEIGHT;
+                    BufferedImage band = paintBand(tree[0], width, y,
+                            Math.min(BAND_HEIGHT, height - y));
+                    painted++;
+                    pending.add(executor.submit(new BandTask(band, painted == bandCount)));
+                }
+                png.writeBand(getResult(pending.remove(0)));
+            }
+            png.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds and lays out the tree at the requested scaling. It is called on the EDT.
+     */
+    private static JComponent createTree(final ComponentFactory factory, int scalingInPercent) {
+        ScaleContext context = getContext(scalingInPercent);
+        final JComponent[] tree = new JComponent[1];
+        Runnable create = new Runnable() {
+            @Override
+            public void run() {
+                tree[0] = factory.createComponent();
+            }
+        };
+        if (context == null) {
+            create.run();
+        } else {
+            context.runWithDefaults(create);
+            ScaleContext.bind(tree[0], context);
+        }
+        disableDoubleBuffering(tree[0]);
+        layout(tree[0], null);
+        return tree[0];
+    }
+
+    /**
+     * @return a context for the scaling, or {@code null} if the global scaling is the same.
+     */
+    private static ScaleContext getContext(int scalingInPercent) {
+        if (scalingInPercent == UiScaling.getScaling()) {
+            return null;
+        }
+        boolean alsoTweak = UiDefaultsScaler.isGlobalTweaking();
+        ScaleContext context = s_lastContext;
+        if (context == null || context.getScaling() != scalingInPercent ||
+                s_lastContextTweaks != alsoTweak) {
+
+            // Renders tend to repeat the same scaling, so keep the last context's defaults
+            context = new ScaleContext(scalingInPercent, alsoTweak);
+            s_lastContext = context;
+            s_lastContextTweaks = alsoTweak;
+        }
+        return context;
+    }
+
+    private static void disableDoubleBuffering(Component c) {
+        if (c instanceof JComponent) {
+            ((JComponent) c).setDoubleBuffered(false);
+        }
+        if (c instanceof Container) {
+            for (Component child : ((Container) c).getComponents()) {
+                disableDoubleBuffering(child);
+            }
+        }
+    }
+
+    private static void runOnEdt(Runnable r) throws InterruptedException {
+        if (SwingUtilities.isEventDispatchThread()) {
+            r.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(r);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static ExecutorService createExecutor(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "swing-dpi offscreen render " +
+                        count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * The scaling already applied to the component's metrics is the current one (of its
+     * {@link ScaleContext}, if any), so only the remainder is applied by the transform.
+     */
+    private static float getRelativeFactor(Component c, int scalingInPercent) {
+        checkScaling(scalingInPercent);
+        return scalingInPercent / (float) UiScaling.getScaling(c);
+    }
+
+    private static void checkScaling(int scalingInPercent) {
+        if (scalingInPercent <= 0) {
+            throw new IllegalArgumentException("scaling: " + scalingInPercent);
+        }
+    }
+
+    private static BufferedImage createImage(Dimension size, float factor) {
+        int width = Math.max(1, (int) Math.ceil(size.width * factor));
+        int height = Math.max(1, (int) Math.ceil(size.height * factor));
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Sizes and lays out a component tree, which need not be displayable.
+     *
+     * @param size the size to use, or {@code null} to keep the current size (if it has one) or
+     *        else to use the preferred size.
+     * @return the size used
+     */
+    private static Dimension layout(JComponent c, Dimension size) {
+        if (size == null) {
+            size = (c.getWidth() > 0 && c.getHeight() > 0) ? c.getSize() : c.getPreferredSize();
+        }
+        c.setSize(size);
+        synchronized (c.getTreeLock()) {
+            layoutTree(c);
+        }
+        return size;
+    }
+
+    private static void layoutTree(Component c) {
+        if (c instanceof Container) {
+            Container container = (Container) c;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layoutTree(child);
+            }
+        }
+    }
+
+    /**
+     * Paints the rows {@code [y, y + height)} of a tree built by {@link #createTree} into a new
+     * image, on the EDT.
+     */
+    private static BufferedImage paintBand(final JComponent c, int width, final int y,
+            final int height) throws InterruptedException {
+        final BufferedImage band = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        runOnEdt(new Runnable() {
+            @Override
+            public void run() {
+                paintBand(c, band, y, height, 1f);
+            }
+        });
+        return band;
+    }
+
+    /**
+     * Paints the part of a component which falls within the rows {@code [y, y + height)} of the
+     * output, into the top of the given image.
+     */
+    private static void paintBand(JComponent c, BufferedImage image, int y, int height,
+            float factor) {
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setClip(0, 0, image.getWidth(), height);
+            g.translate(0, -y);
+            g.scale(factor, factor);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                    RenderingHints.VALUE_STROKE_PURE);
+            if (SwingUtilities.isEventDispatchThread() || !c.isDisplayable()) {
+                c.paint(g);
+            } else {
+                throw new IllegalStateException("Realized components must be painted on the EDT");
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Encodes and compresses one painted band, off the EDT.
+     */
+    private static final class BandTask implements Callable<PngWriter.Band> {
+        private final BufferedImage band;
+        private final boolean last;
+
+        BandTask(BufferedImage band, boolean last) {
+            this.band = band;
+            this.last = last;
+        }
+
+        @Override
+        public PngWriter.Band call() {
+            return PngWriter.compress(band, last);
+        }
+    }
+
+    /**
+     * A minimal PNG encoder (8-bit RGBA, no filtering) which accepts the image a band at a time.
+     * Each band is compressed independently, ending on a byte boundary (with a sync flush), so
+     * that the bands can be compressed in parallel and their output concatenated.
+     */
+    private static final class PngWriter {
+        private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+        private static final int CHUNK_SIZE = 64 * 1024;
+
+        /** The zlib header: deflate with a 32K window, default compression. */
+        private static final byte[] ZLIB_HEADER = { 0x78, (byte) 0x9C };
+
+        private final DataOutputStream out;
+        private final IdatStream idat = new IdatStream();
+        private final Adler32 checksum = new Adler32();
+
+        PngWriter(OutputStream out, int width, int height) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.write(SIGNATURE);
+
+            byte[] header = new byte[13];
+            putInt(header, 0, width);
+            putInt(header, 4, height);
+            header[8] = 8; // bit depth
+            header[9] = 6; // colour type: RGBA
+            writeChunk("IHDR", header, header.length);
+
+            idat.write(ZLIB_HEADER);
+        }
+
+        /**
+         * The rows of a band, both as raw image data (which the zlib checksum covers) and
+         * compressed.
+         */
+        static final class Band {
+            final byte[] rows;
+            final byte[] compressed;
+
+            Band(byte[] rows, byte[] compressed) {
+                this.rows = rows;
+                this.compressed = compressed;
+            }
+        }
+
+        /**
+         * @param last whether this is the final band, which ends the compressed stream
+         */
+        static Band compress(BufferedImage band, boolean last) {
+            int width = band.getWidth();
+            int rowLength = 1 + width * 4;
+            byte[] rows = new byte[rowLength * band.getHeight()];
+            int[] argb = new int[width];
+            for (int y = 0, i = 0; y < band.getHeight(); y++) {
+                band.getRGB(0, y, width, 1, argb, 0, width);
+                rows[i++] = 0; // filter: none
+                for (int x = 0; x < width; x++) {
+                    int p = argb[x];
+                    rows[i++] = (byte) (p >> 16);
+                    rows[i++] = (byte) (p >> 8);
+                    rows[i++] = (byte) p;
+                    rows[i++] = (byte) (p >>> 24);
+                }
+            }
+
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(rows);
+                ByteArrayOutputStream compressed =
+                        new ByteArrayOutputStream(rows.length / 4 + 64);
+                byte[] buffer = new byte[CHUNK_SIZE];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        compressed.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                } else {
+                    int n;
+                    do {
+                        n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        compressed.write(buffer, 0, n);
+                    } while (n == buffer.length);
+                }
+                return new Band(rows, compressed.toByteArray());
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * Writes the bands in order, the last being one which {@link #compress} was told was.
+         */
+        void writeBand(Band band) throws IOException {
+            checksum.update(band.rows);
+            idat.write(band.compressed);
+        }
+
+        void finish() throws IOException {
+            byte[] trailer = new byte[4];
+            putInt(trailer, 0, (int) checksum.getValue());
+            idat.write(trailer);
+            idat.flush();
+            writeChunk("IEND", new byte[0], 0);
+            out.flush();
+        }
+
+        private void writeChunk(String type, byte[] data, int length) throws IOException {
+            byte[] typeBytes = type.getBytes("US-ASCII");
+            CRC32 crc = new CRC32();
+            crc.update(typeBytes);
+            crc.update(data, 0, length);
+            out.writeInt(length);
+            out.write(typeBytes);
+            out.write(data, 0, length);
+            out.writeInt((int) crc.getValue());
+        }
+
+        private static void putInt(byte[] b, int offset, int value) {
+            b[offset] = (byte) (value >>> 24);
+            b[offset + 1] = (byte) (value >>> 16);
+            b[offset + 2] = (byte) (value >>> 8);
+            b[offset + 3] = (byte) value;
+        }
+
+        /**
+         * Collects the compressed data into IDAT chunks.
+         */
+        private final class IdatStream extends OutputStream {
+            private final byte[] buffer = new byte[CHUNK_SIZE];
+            private int count;
+
+            @Override
+            public void write(int b) throws IOException {
+                buffer[count++] = (byte) b;
+                if (count == buffer.length) {
+                    flush();
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                while (len > 0) {
+                    int n = Math.min(len, buffer.length - count);
+                    System.arraycopy(b, off, buffer, count, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                    if (count == buffer.length) {
+                        flush();
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (count > 0) {
+                    writeChunk("IDAT", buffer, count);
+                    count = 0;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }
+    }
+}
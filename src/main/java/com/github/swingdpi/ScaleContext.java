@@ -0,0 +1,277 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.JPopupMenu;
+import javax.swing.LookAndFeel;
+import javax.swing.RootPaneContainer;
+import javax.swing.SwingUtilities;
+import javax.swing.UIDefaults;
+import javax.swing.UIManager;
+
+/**
+ * A scaling level which applies to one window or component subtree only, rather than to the whole
+ * application. For example, a 200% presentation window can be shown next to a 100% main window.
+ * <p>
+ * Each context lazily builds (and then keeps) its own scaled copy of the current L&amp;F's
+ * defaults, which in turn hold their own icon rasters. When a subtree is updated via
+ * {@link #updateComponentTreeUI(Component)} those defaults are swapped into the UIManager for
+ * the duration of the {@code updateUI} calls, so the UI delegates pick up the context's values.
+ * Only that subtree is rebuilt; other windows are unaffected.
+ * <p>
+ * Components resolve their context through the hierarchy: see {@link #get(Component)} and
+ * {@link UiScaling#getScaling(Component)}. Code which paints with hard-coded metrics should use
+ * the latter (rather than {@link UiScaling#getScaling()}) to honour the context.
+ * <p>
+ * Limitations: values which UI delegates look up lazily while painting (rather than when
+ * installed) come from the global defaults. Synth-based L&amp;Fs such as Nimbus cache their
+ * styles per region, and so they can not currently show different scalings side by side.
+ * <p>
+ * Threading: all methods must be called on the EDT, except for the simple getters.
+ */
+public final class ScaleContext {
+
+    private static final Object CLIENT_PROPERTY_KEY = ScaleContext.class;
+
+    private final int scalingPercentage;
+    private final boolean alsoTweak;
+
+    /** The L&amp;F which {@link #scaledDefaults} was built from, to detect L&amp;F changes. */
+    private LookAndFeel defaultsLookAndFeel;
+    private UIDefaults scaledDefaults;
+
+    /**
+     * @param scalingInPercent the scaling to apply, where 100 represents 96 DPI
+     * @param alsoTweak as per {@link UiDefaultsScaler#updateAndApplyGlobalScaling(int, boolean)}
+     */
+    public ScaleContext(int scalingInPercent, boolean alsoTweak) {
+        this.scalingPercentage = scalingInPercent;
+        this.alsoTweak = alsoTweak;
+    }
+
+    public int getScaling() {
+        return scalingPercentage;
+    }
+
+    public float getScalingFactor() {
+        return scalingPercentage / 100f;
+    }
+
+    /**
+     * Scales using the same rounding as {@link UiScaling#scale(int)}.
+     */
+    public int scale(int i) {
+        return UiScaling.scale(i, scalingPercentage);
+    }
+
+    /**
+     * Builds this context's scaled defaults now, rather than when first needed, so that a later
+     * switch to this context is quicker.
+     */
+    public void prepare() {
+        assert SwingUtilities.isEventDispatchThread();
+        getScaledDefaults();
+    }
+
+    /**
+     * Binds a context to a window and rebuilds that window's UI using it.
+     *
+     * @param context the context to use, or {@code null} to revert to the global scaling.
+     */
+    public static void install(RootPaneContainer window, ScaleContext context) {
+        install(window.getRootPane(), context);
+    }
+
+    /**
+     * Binds a context to a component subtree and rebuilds that subtree's UI using it.
+     *
+     * @param context the context to use, or {@code null} to revert to the scaling of the parent.
+     */
+    public static void install(JComponent root, ScaleContext context) {
+        assert SwingUtilities.isEventDispatchThread();
+
+        bind(root, context);
+        updateComponentTreeUI(root);
+    }
+
+    /**
+     * Binds a context to a component subtree without rebuilding its UI, e.g. for a subtree which
+     * was created under {@link #runWithDefaults(Runnable)}.
+     */
+    static void bind(JComponent root, ScaleContext context) {
+        root.putClientProperty(CLIENT_PROPERTY_KEY, context);
+    }
+
+    /**
+     * Finds the context which applies to a component, by searching up through its parents.
+     * The invokers of popup menus and the owners of windows are treated as parents.
+     *
+     * @return the context, or {@code null} if the global scaling applies.
+     */
+    public static ScaleContext get(Component c) {
+        for (Component p = c; p != null; p = getParentOrInvoker(p)) {
+            ScaleContext context = getBound(p);
+            if (context != null) {
+                return context;
+            }
+        }
+        return null;
+    }
+
+    private static ScaleContext getBound(Component c) {
+        JComponent bindable = null;
+        if (c instanceof JComponent) {
+            bindable = (JComponent) c;
+        } else if (c instanceof RootPaneContainer) {
+            bindable = ((RootPaneContainer) c).getRootPane();
+        }
+        if (bindable == null) {
+            return null;
+        }
+        Object value = bindable.getClientProperty(CLIENT_PROPERTY_KEY);
+        return (value instanceof ScaleContext) ? (ScaleContext) value : null;
+    }
+
+    private static Component getParentOrInvoker(Component c) {
+        if (c instanceof JPopupMenu) {
+            Component invoker = ((JPopupMenu) c).getInvoker();
+            if (invoker != null) {
+                return invoker;
+            }
+        }
+        return c.getParent();
+    }
+
+    /**
+     * A replacement for {@link SwingUtilities#updateComponentTreeUI(Component)} which respects any
+     * contexts bound within the tree. Applications using contexts should call this (for each
+     * window) after changing the L&amp;F or global scaling, otherwise the bound windows would be
+     * rebuilt using the global defaults.
+     */
+    public static void updateComponentTreeUI(Component root) {
+        assert SwingUtilities.isEventDispatchThread();
+
+        final Component tree = root;
+        ScaleContext context = get(root);
+        Runnable update = new Runnable() {
+            @Override
+            public void run() {
+                SwingUtilities.updateComponentTreeUI(tree);
+            }
+        };
+        if (context == null) {
+            update.run();
+        } else {
+            context.runWithDefaults(update);
+        }
+
+        // Nested contexts were just updated with their ancestor's defaults, so redo them.
+        for (Component nested : findNestedBindings(root, context)) {
+            updateComponentTreeUI(nested);
+        }
+    }
+
+    /**
+     * @return the outer-most descendants of {@code root} bound to a context other than the one
+     *         in effect for root itself.
+     */
+    private static List<Component> findNestedBindings(Component root, ScaleContext inEffect) {
+        if (!(root instanceof Container)) {
+            return Collections.emptyList();
+        }
+        List<Component> result = new ArrayList<Component>();
+        for (Component child : ((Container) root).getComponents()) {
+            collectBindings(child, inEffect, result);
+        }
+        return result;
+    }
+
+    private static void collectBindings(
+            Component c, ScaleContext inEffect, List<Component> result) {
+        ScaleContext bound = getBound(c);
+        if (bound != null && bound != inEffect) {
+            result.add(c);
+            return;
+        }
+        if (c instanceof Container) {
+            for (Component child : ((Container) c).getComponents()) {
+                collectBindings(child, inEffect, result);
+            }
+        }
+    }
+
+    /**
+     * Temporarily installs this context's defaults over the current L&amp;F defaults (with a single
+     * bulk update in each direction) while running the given task. The raw entries are swapped
+     * both ways, so lazy and active values are not resolved into shared instances.
+     */
+    void runWithDefaults(Runnable task) {
+        assert SwingUtilities.isEventDispatchThread();
+
+        UIDefaults target = UIManager.getLookAndFeelDefaults();
+        Map<Object, Object> scaled = UiDefaultsScaler.getRawValues(getScaledDefaults());
+        Map<Object, Object> current = UiDefaultsScaler.getRawValues(target);
+
+        Object[] replacements = new Object[scaled.size() * 2];
+        Object[] originals = new Object[scaled.size() * 2];
+        int i = 0;
+        for (Map.Entry<Object, Object> entry : scaled.entrySet()) {
+            replacements[i] = entry.getKey();
+            replacements[i + 1] = entry.getValue();
+            originals[i] = entry.getKey();
+            originals[i + 1] = current.get(entry.getKey());
+            i += 2;
+        }
+
+        target.putDefaults(replacements);
+        try {
+            task.run();
+        } finally {
+            target.putDefaults(originals);
+        }
+    }
+
+    /**
+     * @return this context's scaled defaults, (re)building them if the L&amp;F has changed.
+     */
+    private UIDefaults getScaledDefaults() {
+        LookAndFeel laf = UIManager.getLookAndFeel();
+        if (scaledDefaults == null || defaultsLookAndFeel != laf) {
+
+            // LookAndFeel#getDefaults() creates a new, unscaled table each time it is called,
+            // except for a ScalingLookAndFeel, whose tables are already scaled.
+            LookAndFeel base = ScalingLookAndFeel.getUnscaledLookAndFeel(laf);
+            UIDefaults defaults = base.getDefaults();
+            UiDefaultsScaler.applyScaling(defaults, base, scalingPercentage, alsoTweak);
+            scaledDefaults = defaults;
+            defaultsLookAndFeel = laf;
+        }
+        return scaledDefaults;
+    }
+}
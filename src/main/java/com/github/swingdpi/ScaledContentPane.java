@@ -0,0 +1,503 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.RootPaneContainer;
+import javax.swing.SwingUtilities;
+
+/**
+ * A content pane which lays out its content at a smaller, logical size and paints it through a
+ * scaled {@link Graphics2D}. This scales everything in a window, including metrics which are
+ * hard-coded in pixels, which is useful on JDK 8 where the platform does not do it for us.
+ * <p>
+ * It is intended as an alternative to {@link UiDefaultsScaler}, rather than an addition to it:
+ * the transform applies just the ratio of the requested scaling to {@link UiScaling#getScaling()}
+ * (which is normally left at 100%) so that nothing is scaled twice.
+ * <p>
+ * Mouse events are mapped back to logical coordinates and re-dispatched to the component under
+ * the mouse. Repaints of the content are mapped to this pane by a {@link ScalingRepaintManager},
+ * which is installed as the current {@link javax.swing.RepaintManager} the first time a pane is
+ * installed (replacing any other custom manager). Painting still goes through that manager's
+ * cached volatile back buffer, so each repaint costs one blit to the screen as usual.
+ * <p>
+ * Limitations: only the content pane is scaled, so the menu bar and any heavyweight or
+ * lightweight popups (menus, combo box lists and tooltips) are shown unscaled, and popups are
+ * positioned as if the content were unscaled too. Drag and drop targets within the content are
+ * not found. Viewports are switched to {@link JViewport#SIMPLE_SCROLL_MODE}, since blitting
+ * would copy the wrong area of the screen. Code which paints through {@code getGraphics()},
+ * rather than by repainting, is not scaled.
+ * <p>
+ * Threading: all methods must be called on the EDT.
+ */
+public final class ScaledContentPane extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    /** Interpolation can spread a repainted area into the neighbouring device pixel. */
+    private static final int DIRTY_MARGIN = 1;
+
+    private final Container content;
+    private final View view;
+    private final ViewportTracker viewportTracker = new ViewportTracker();
+    private int scalingPercentage;
+
+    /**
+     * @param content the component tree to scale, usually the window's original content pane
+     * @param scalingInPercent the scaling to show the content at, where 100 represents 96 DPI
+     */
+    public ScaledContentPane(Container content, int scalingInPercent) {
+        checkScaling(scalingInPercent);
+        this.content = content;
+        this.scalingPercentage = scalingInPercent;
+        this.view = new View();
+        view.add(content, BorderLayout.CENTER);
+        add(view);
+        setOpaque(content.isOpaque());
+
+        MouseRedirector redirector = new MouseRedirector();
+        addMouseListener(redirector);
+        addMouseMotionListener(redirector);
+        addMouseWheelListener(redirector);
+        viewportTracker.track(content);
+    }
+
+    /**
+     * Scales the content pane of a window, or changes its scaling if it is already scaled.
+     *
+     * @param scalingInPercent the scaling to show the content at, where 100 represents 96 DPI
+     */
+    public static void install(RootPaneContainer window, int scalingInPercent) {
+        assert SwingUtilities.isEventDispatchThread();
+
+        ScalingRepaintManager.install();
+        Container current = window.getContentPane();
+        if (current instanceof ScaledContentPane) {
+            ((ScaledContentPane) current).setScaling(scalingInPercent);
+        } else {
+            window.setContentPane(new ScaledContentPane(current, scalingInPercent));
+            window.getRootPane().revalidate();
+            window.getRootPane().repaint();
+        }
+    }
+
+    /**
+     * Restores the original content pane of a window, if it was scaled by
+     * {@link #install(RootPaneContainer, int)}.
+     */
+    public static void uninstall(RootPaneContainer window) {
+        assert SwingUtilities.isEventDispatchThread();
+
+        Container current = window.getContentPane();
+        if (current instanceof ScaledContentPane) {
+            ScaledContentPane pane = (ScaledContentPane) current;
+            pane.viewportTracker.untrack(pane.content);
+            pane.view.remove(pane.content);
+            window.setContentPane(pane.content);
+            window.getRootPane().revalidate();
+            window.getRootPane().repaint();
+        }
+    }
+
+    public Container getContent() {
+        return content;
+    }
+
+    public int getScaling() {
+        return scalingPercentage;
+    }
+
+    public void setScaling(int scalingInPercent) {
+        checkScaling(scalingInPercent);
+        if (scalingInPercent != scalingPercentage) {
+            scalingPercentage = scalingInPercent;
+            revalidate();
+            repaint();
+        }
+    }
+
+    /**
+     * @return the factor applied by the transform, being the ratio of this pane's scaling to the
+     *         scaling already applied to the UI defaults.
+     */
+    public float getScalingFactor() {
+        return scalingPercentage / (float) UiScaling.getScaling();
+    }
+
+    private static void checkScaling(int scalingInPercent) {
+        if (scalingInPercent <= 0) {
+            throw new IllegalArgumentException("scaling: " + scalingInPercent);
+        }
+    }
+
+    @Override
+    public void doLayout() {
+        float factor = getScalingFactor();
+        view.setBounds(0, 0, toLogical(getWidth(), factor), toLogical(getHeight(), factor));
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return isPreferredSizeSet() ? super.getPreferredSize() : toPane(view.getPreferredSize());
+    }
+
+    @Override
+    public Dimension getMinimumSize() {
+        return isMinimumSizeSet() ? super.getMinimumSize() : toPane(view.getMinimumSize());
+    }
+
+    @Override
+    public Dimension getMaximumSize() {
+        return isMaximumSizeSet() ? super.getMaximumSize() : toPane(view.getMaximumSize());
+    }
+
+    @Override
+    protected void paintChildren(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            float factor = getScalingFactor();
+            g2.scale(factor, factor);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                    RenderingHints.VALUE_STROKE_PURE);
+            super.paintChildren(g2);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /** Rounds up, so that the scaled content always covers the whole pane. */
+    private static int toLogical(int size, float factor) {
+        return (int) Math.ceil(size / factor);
+    }
+
+    private Dimension toPane(Dimension logical) {
+        float factor = getScalingFactor();
+
+        // Casting saturates, for the 'unbounded' maximum sizes
+        return new Dimension(
+                (int) Math.ceil(logical.width * (double) factor),
+                (int) Math.ceil(logical.height * (double) factor));
+    }
+
+    /**
+     * Maps a dirty region of the content to the area of this pane which it is painted to.
+     *
+     * @param c the component which {@code r} is relative to, which must be within the content
+     * @return the area in this pane's coordinates, or {@code null} if it is outside of the pane
+     */
+    Rectangle toPane(Component c, Rectangle r) {
+        Rectangle logical = SwingUtilities.convertRectangle(c, r, view);
+        double factor = getScalingFactor();
+        double x0 = Math.floor(logical.x * factor) - DIRTY_MARGIN;
+        double y0 = Math.floor(logical.y * factor) - DIRTY_MARGIN;
+        double x1 = Math.ceil(((double) logical.x + logical.width) * factor) + DIRTY_MARGIN;
+        double y1 = Math.ceil(((double) logical.y + logical.height) * factor) + DIRTY_MARGIN;
+
+        int left = (int) Math.max(0, x0);
+        int top = (int) Math.max(0, y0);
+        int right = (int) Math.min(getWidth(), x1);
+        int bottom = (int) Math.min(getHeight(), y1);
+        if (right <= left || bottom <= top) {
+            return null;
+        }
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * @return the pane whose scaled content includes the given component, if any.
+     */
+    static ScaledContentPane getScalingAncestor(Component c) {
+        for (Component p = c; p != null; p = p.getParent()) {
+            if (p instanceof View) {
+                return ((View) p).getPane();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Holds the content at its logical size. It claims to contain no points, so that the AWT
+     * sends all mouse events to the pane (which maps and re-dispatches them) and it redirects any
+     * immediate painting of the content to the pane.
+     */
+    private final class View extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        View() {
+            super(new BorderLayout());
+            setOpaque(false);
+        }
+
+        ScaledContentPane getPane() {
+            return ScaledContentPane.this;
+        }
+
+        @Override
+        public boolean contains(int x, int y) {
+            return false;
+        }
+
+        @Override
+        protected boolean isPaintingOrigin() {
+            return true;
+        }
+
+        @Override
+        public void paintImmediately(int x, int y, int w, int h) {
+            Rectangle area = toPane(this, new Rectangle(x, y, w, h));
+            if (area != null) {
+                ScaledContentPane.this.paintImmediately(area);
+            }
+        }
+    }
+
+    /**
+     * Re-dispatches the mouse events received by the pane to the content, mimicking the AWT's
+     * own dispatching of lightweight events: the component which is pressed receives all events
+     * until every button is released, and enter / exit events follow the mouse.
+     */
+    private final class MouseRedirector
+            implements MouseListener, MouseMotionListener, MouseWheelListener {
+
+        private static final int BUTTONS_DOWN_MASK = InputEvent.BUTTON1_DOWN_MASK
+                | InputEvent.BUTTON2_DOWN_MASK | InputEvent.BUTTON3_DOWN_MASK;
+
+        /** The component which the mouse is over, as far as it has been told. */
+        private Component entered;
+
+        /** The component which was pressed, while any buttons remain down. */
+        private Component grabbed;
+
+        /** The component which was last pressed, which alone may then be clicked. */
+        private Component pressed;
+
+        @Override
+        public void mouseClicked(MouseEvent e) {
+            redirect(e);
+        }
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            redirect(e);
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e) {
+            redirect(e);
+        }
+
+        @Override
+        public void mouseEntered(MouseEvent e) {
+            redirect(e);
+        }
+
+        @Override
+        public void mouseExited(MouseEvent e) {
+            redirect(e);
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+            redirect(e);
+        }
+
+        @Override
+        public void mouseMoved(MouseEvent e) {
+            redirect(e);
+        }
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            redirect(e);
+        }
+
+        private void redirect(MouseEvent e) {
+            float factor = getScalingFactor();
+            Point logical = new Point(
+                    (int) Math.floor(e.getX() / factor),
+                    (int) Math.floor(e.getY() / factor));
+            int id = e.getID();
+            Component deepest = getDeepestComponentAt(logical);
+            Component under = (id == MouseEvent.MOUSE_EXITED) ? null
+                    : findListening(deepest, MouseEvent.MOUSE_ENTERED);
+
+            Component hover = (grabbed == null || under == grabbed) ? under : null;
+            setEntered(hover, e, logical);
+            updateCursor(deepest);
+
+            if (id != MouseEvent.MOUSE_ENTERED && id != MouseEvent.MOUSE_EXITED) {
+                Component target = (grabbed != null && id != MouseEvent.MOUSE_WHEEL) ? grabbed
+                        : findListening(deepest, id);
+                if (id == MouseEvent.MOUSE_CLICKED && target != pressed) {
+                    target = null;
+                }
+                if (target != null) {
+                    dispatch(target, e, id, logical);
+                }
+                if (id == MouseEvent.MOUSE_PRESSED && grabbed == null) {
+                    grabbed = target;
+                    pressed = target;
+                } else if (id == MouseEvent.MOUSE_RELEASED
+                        && (e.getModifiersEx() & BUTTONS_DOWN_MASK) == 0) {
+                    grabbed = null;
+                    setEntered(under, e, logical);
+                }
+            }
+            e.consume();
+        }
+
+        private void setEntered(Component c, MouseEvent e, Point logical) {
+            if (c != entered) {
+                if (entered != null) {
+                    dispatch(entered, e, MouseEvent.MOUSE_EXITED, logical);
+                }
+                entered = c;
+                if (c != null) {
+                    dispatch(c, e, MouseEvent.MOUSE_ENTERED, logical);
+                }
+            }
+        }
+
+        private void updateCursor(Component deepest) {
+            Cursor cursor = (deepest == null) ? null : deepest.getCursor();
+            if (cursor != getCursor()) {
+                setCursor(cursor);
+            }
+        }
+
+        private Component getDeepestComponentAt(Point logical) {
+            for (Component child : view.getComponents()) {
+                int x = logical.x - child.getX();
+                int y = logical.y - child.getY();
+                if (child.isVisible() && child.contains(x, y)) {
+                    return SwingUtilities.getDeepestComponentAt(child, x, y);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the innermost of the component and its ancestors (within the content) which
+         *         listens for the given type of event, or {@code null} if none do.
+         */
+        private Component findListening(Component c, int id) {
+            for (Component p = c; p != null && p != view; p = p.getParent()) {
+                if (isListening(p, id)) {
+                    return p;
+                }
+            }
+            return null;
+        }
+
+        private boolean isListening(Component c, int id) {
+            switch (id) {
+            case MouseEvent.MOUSE_MOVED:
+            case MouseEvent.MOUSE_DRAGGED:
+                return c.getMouseMotionListeners().length > 0;
+            case MouseEvent.MOUSE_WHEEL:
+                return c.getMouseWheelListeners().length > 0;
+            default:
+                return c.getMouseListeners().length > 0;
+            }
+        }
+
+        private void dispatch(Component target, MouseEvent e, int id, Point logical) {
+            Point p = SwingUtilities.convertPoint(view, logical, target);
+            // The event derives the old-style modifiers from these and the button
+            int modifiers = e.getModifiersEx();
+            MouseEvent retargeted;
+            if (e instanceof MouseWheelEvent) {
+                MouseWheelEvent w = (MouseWheelEvent) e;
+                retargeted = new MouseWheelEvent(target, id, e.getWhen(), modifiers, p.x, p.y,
+                        e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(),
+                        e.isPopupTrigger(), w.getScrollType(), w.getScrollAmount(),
+                        w.getWheelRotation(), w.getPreciseWheelRotation());
+            } else {
+                retargeted = new MouseEvent(target, id, e.getWhen(), modifiers, p.x, p.y,
+                        e.getXOnScreen(), e.getYOnScreen(), e.getClickCount(),
+                        e.isPopupTrigger(), e.getButton());
+            }
+            target.dispatchEvent(retargeted);
+        }
+    }
+
+    /**
+     * Switches every viewport in the content, including those added later, to simple scrolling.
+     */
+    private static final class ViewportTracker implements ContainerListener {
+
+        void track(Component c) {
+            if (c instanceof JViewport) {
+                ((JViewport) c).setScrollMode(JViewport.SIMPLE_SCROLL_MODE);
+            }
+            if (c instanceof Container) {
+                Container container = (Container) c;
+                container.removeContainerListener(this);
+                container.addContainerListener(this);
+                for (Component child : container.getComponents()) {
+                    track(child);
+                }
+            }
+        }
+
+        void untrack(Component c) {
+            if (c instanceof Container) {
+                Container container = (Container) c;
+                container.removeContainerListener(this);
+                for (Component child : container.getComponents()) {
+                    untrack(child);
+                }
+            }
+        }
+
+        @Override
+        public void componentAdded(ContainerEvent e) {
+            track(e.getChild());
+        }
+
+        @Override
+        public void componentRemoved(ContainerEvent e) {
+            untrack(e.getChild());
+        }
+    }
+}
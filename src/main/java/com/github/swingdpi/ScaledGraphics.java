@@ -0,0 +1,861 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ColorModel;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.swingdpi.util.DelegatingGraphics2D;
+
+/**
+ * A graphics which takes unscaled (100%) coordinates, sizes, fonts and strokes, and paints them
+ * scaled to a given level. Obtain one from {@link UiScaling#createGraphics(java.awt.Graphics)}.
+ * <p>
+ * Coordinates are snapped to device pixels with the same rounding as {@link UiScaling#scale(int)}
+ * and, so that adjacent shapes neither overlap nor leave gaps, each edge is scaled from its
+ * position rather than from the size: a rectangle at {@code x} of width {@code w} covers the
+ * device pixels from {@code scale(x)} to {@code scale(x + w)}. One-pixel lines and outlines
+ * (drawn with the default, or any other undashed stroke up to one pixel wide) cover exactly the
+ * device pixels of the logical pixels they pass through, so they become thicker with the scaling.
+ * <p>
+ * The scaled fonts and strokes are interned for each scaling (and are discarded when the
+ * {@link UiScaling#getEpoch() epoch} changes, or when too many accumulate), so painting allocates
+ * nothing in steady state, besides the graphics itself. {@link #getFont()}, {@link #getStroke()}
+ * and {@link #getPaint()} return the unscaled values which were set, and font metrics are
+ * unscaled too. The font inherited from the underlying graphics (typically a component's font,
+ * which the scaled UI defaults have already sized) is kept as it is; {@link #getFont()} returns
+ * its unscaled equivalent.
+ * <p>
+ * Integer translations are in unscaled units, and are kept by this graphics so that edges snap
+ * to device pixels. Other transforms are applied to the underlying graphics, after the scaling
+ * (and after moving any integer translation there first, which they must follow), so
+ * {@link #getTransform()} returns the device transform, including the unscaled translation.
+ * Setting a transform which differs from the current one only by such a translation (e.g. one
+ * saved earlier) restores that translation.
+ */
+public final class ScaledGraphics extends DelegatingGraphics2D {
+
+    /**
+     * Threading: all access must synchronize on this final member
+     */
+    private static final List<Interned> s_interned = new ArrayList<Interned>();
+
+    /** The epoch for which {@link #s_interned} was built. Guarded by {@link #s_interned}. */
+    private static int s_internedEpoch;
+
+    private static final int[] NO_POINTS = new int[0];
+
+    private final int scaling;
+    private final float factor;
+    private final Interned interned;
+
+    /**
+     * The unscaled translation applied by this graphics. It is not passed on to the underlying
+     * graphics, so that edges are always scaled from the same origin.
+     */
+    private int translateX;
+    private int translateY;
+
+    /** Maps unscaled coordinates to device coordinates; kept in step with the translation. */
+    private final AffineTransform toDevice = new AffineTransform();
+
+    private Font font;
+    private Stroke stroke;
+    private boolean thinStroke;
+    private Paint paint;
+
+    /** Reused for the vertices of polygons. */
+    private int[] xPoints = NO_POINTS;
+    private int[] yPoints = NO_POINTS;
+
+    /**
+     * @param delegate a graphics with no scaling of its own, whose stroke is unscaled and whose
+     *        font is already scaled
+     */
+    ScaledGraphics(Graphics2D delegate, int scalingInPercent) {
+        super(delegate);
+        if (scalingInPercent <= 0) {
+            throw new IllegalArgumentException("scaling: " + scalingInPercent);
+        }
+        this.scaling = scalingInPercent;
+        this.factor = scalingInPercent / 100f;
+        this.interned = getInterned(scalingInPercent);
+        updateTransform();
+        Font inherited = delegate.getFont();
+        this.font = (inherited == null) ? null : interned.getUnscaledFont(inherited);
+        setStroke(delegate.getStroke());
+        setPaint(delegate.getPaint());
+    }
+
+    /**
+     * Copies the state of {@code original}, which {@code delegate} was created from.
+     */
+    private ScaledGraphics(Graphics2D delegate, ScaledGraphics original) {
+        super(delegate);
+        this.scaling = original.scaling;
+        this.factor = original.factor;
+        this.interned = original.interned;
+        this.translateX = original.translateX;
+        this.translateY = original.translateY;
+        updateTransform();
+        this.font = original.font;
+        this.stroke = original.stroke;
+        this.thinStroke = original.thinStroke;
+        this.paint = original.paint;
+    }
+
+    @Override
+    protected Graphics2D wrap(Graphics2D g) {
+        return new ScaledGraphics(g, this);
+    }
+
+    public int getScaling() {
+        return scaling;
+    }
+
+    // --- Coordinate mapping
+
+    private int scale(int i) {
+        return UiScaling.scale(i, scaling);
+    }
+
+    private int x(int x) {
+        return scale(translateX + x);
+    }
+
+    private int y(int y) {
+        return scale(translateY + y);
+    }
+
+    /** @return the device pixel at (or just before) the middle of a logical pixel column. */
+    private int centreX(int x) {
+        return (x(x) + x(x + 1) - 1) / 2;
+    }
+
+    private int centreY(int y) {
+        return (y(y) + y(y + 1) - 1) / 2;
+    }
+
+    private float x(float x) {
+        return (float) (x * factor + toDevice.getTranslateX());
+    }
+
+    private float y(float y) {
+        return (float) (y * factor + toDevice.getTranslateY());
+    }
+
+    private void updateTransform() {
+        toDevice.setTransform(factor, 0, 0, factor, translateX * factor, translateY * factor);
+    }
+
+    private Shape toDevice(Shape s) {
+        return toDevice.createTransformedShape(s);
+    }
+
+    private AffineTransform toDevice(AffineTransform xform) {
+        AffineTransform result = new AffineTransform(toDevice);
+        if (xform != null) {
+            result.concatenate(xform);
+        }
+        return result;
+    }
+
+    private AffineTransform toLogical() {
+        return new AffineTransform(1 / factor, 0, 0, 1 / factor,
+                -toDevice.getTranslateX() / factor, -toDevice.getTranslateY() / factor);
+    }
+
+    // --- State
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        if (font != null) {
+            this.font = font;
+            delegate.setFont(interned.getFont(font));
+        }
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(Font f) {
+        return delegate.getFontMetrics(f);
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void setStroke(Stroke s) {
+        ScaledStroke scaled = interned.getStroke(s);
+        this.stroke = s;
+        this.thinStroke = scaled.thin;
+        delegate.setStroke(scaled.stroke);
+    }
+
+    @Override
+    public Paint getPaint() {
+        return paint;
+    }
+
+    @Override
+    public void setPaint(Paint paint) {
+        if (paint != null) {
+            this.paint = paint;
+            applyPaint();
+        }
+    }
+
+    @Override
+    public void setColor(Color c) {
+        if (c != null) {
+            this.paint = c;
+            delegate.setColor(c);
+        }
+    }
+
+    private void applyPaint() {
+        if (paint instanceof Color) {
+            delegate.setPaint(paint);
+        } else {
+            delegate.setPaint(new LogicalPaint(paint, new AffineTransform(toDevice), toLogical()));
+        }
+    }
+
+    // --- Transforms
+
+    @Override
+    public void translate(int x, int y) {
+        translateX += x;
+        translateY += y;
+        updateTransform();
+        if (!(paint instanceof Color)) {
+            applyPaint();
+        }
+    }
+
+    @Override
+    public void translate(double tx, double ty) {
+        if (tx == (int) tx && ty == (int) ty) {
+            translate((int) tx, (int) ty);
+        } else {
+            delegate.translate(tx * factor, ty * factor);
+        }
+    }
+
+    /**
+     * @return the device transform, including the unscaled translation of this graphics
+     */
+    @Override
+    public AffineTransform getTransform() {
+        AffineTransform transform = delegate.getTransform();
+        transform.translate(toDevice.getTranslateX(), toDevice.getTranslateY());
+        return transform;
+    }
+
+    /**
+     * If {@code tx} is the current device transform, but for a translation of whole unscaled
+     * pixels, that translation becomes the unscaled translation of this graphics (so that edges
+     * keep snapping to device pixels). Otherwise the whole transform is applied to the underlying
+     * graphics, and the unscaled translation is reset.
+     */
+    @Override
+    public void setTransform(AffineTransform tx) {
+        int[] translation = getUnscaledTranslation(delegate.getTransform(), tx);
+        if (translation != null) {
+            translateX = translation[0];
+            translateY = translation[1];
+        } else {
+            translateX = 0;
+            translateY = 0;
+            delegate.setTransform(tx);
+        }
+        updateTransform();
+        if (!(paint instanceof Color)) {
+            applyPaint();
+        }
+    }
+
+    /**
+     * @return the whole unscaled pixels which {@code transform} is translated by, relative to
+     *         {@code base}, or {@code null} if it differs from base in any other way.
+     */
+    private int[] getUnscaledTranslation(AffineTransform base, AffineTransform transform) {
+        if (base.getScaleX() != transform.getScaleX() ||
+                base.getShearY() != transform.getShearY() ||
+                base.getShearX() != transform.getShearX() ||
+                base.getScaleY() != transform.getScaleY()) {
+            return null;
+        }
+        try {
+            AffineTransform relative = base.createInverse();
+            relative.concatenate(transform);
+            double x = relative.getTranslateX() / factor;
+            double y = relative.getTranslateY() / factor;
+            long rx = Math.round(x);
+            long ry = Math.round(y);
+            if (Math.abs(x - rx) > 1e-6 || Math.abs(y - ry) > 1e-6 ||
+                    rx != (int) rx || ry != (int) ry) {
+                return null;
+            }
+            return new int[] { (int) rx, (int) ry };
+        } catch (NoninvertibleTransformException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void rotate(double theta) {
+        applyTranslation();
+        delegate.rotate(theta);
+    }
+
+    @Override
+    public void rotate(double theta, double x, double y) {
+        applyTranslation();
+        delegate.rotate(theta, x * factor, y * factor);
+    }
+
+    @Override
+    public void scale(double sx, double sy) {
+        applyTranslation();
+        delegate.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(double shx, double shy) {
+        applyTranslation();
+        delegate.shear(shx, shy);
+    }
+
+    /**
+     * The underlying graphics is transformed by {@code tx} in unscaled units: i.e. with its
+     * translation scaled.
+     */
+    @Override
+    public void transform(AffineTransform tx) {
+        applyTranslation();
+        delegate.transform(new AffineTransform(tx.getScaleX(), tx.getShearY(),
+                tx.getShearX(), tx.getScaleY(),
+                tx.getTranslateX() * factor, tx.getTranslateY() * factor));
+    }
+
+    /**
+     * Moves the unscaled translation of this graphics to the underlying graphics, ahead of a
+     * transform which it must precede. (The scaling commutes with rotation, scaling and shear,
+     * so they may then be applied to the underlying graphics as they are.)
+     */
+    private void applyTranslation() {
+        if (translateX == 0 && translateY == 0) {
+            return;
+        }
+        delegate.translate(translateX * (double) factor, translateY * (double) factor);
+        translateX = 0;
+        translateY = 0;
+        updateTransform();
+        if (!(paint instanceof Color)) {
+            applyPaint();
+        }
+    }
+
+    // --- Clipping
+
+    @Override
+    public Rectangle getClipBounds() {
+        Rectangle r = delegate.getClipBounds();
+        return (r == null) ? null : toLogical(r);
+    }
+
+    /**
+     * Note that, as with some other graphics, {@code r} is returned unchanged if there is no clip.
+     */
+    @Override
+    public Rectangle getClipBounds(Rectangle r) {
+        Rectangle device = delegate.getClipBounds();
+        if (device != null) {
+            r.setBounds(toLogical(device));
+        }
+        return r;
+    }
+
+    /**
+     * Converts device bounds, in place, to the smallest logical bounds which cover them.
+     */
+    private Rectangle toLogical(Rectangle r) {
+        int x0 = (int) Math.floor(r.x / factor) - translateX;
+        int y0 = (int) Math.floor(r.y / factor) - translateY;
+        int x1 = (int) Math.ceil(((double) r.x + r.width) / factor) - translateX;
+        int y1 = (int) Math.ceil(((double) r.y + r.height) / factor) - translateY;
+        r.setBounds(x0, y0, x1 - x0, y1 - y0);
+        return r;
+    }
+
+    @Override
+    public boolean hitClip(int x, int y, int width, int height) {
+        return delegate.hitClip(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y));
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        delegate.clipRect(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y));
+    }
+
+    @Override
+    public void setClip(int x, int y, int width, int height) {
+        delegate.setClip(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y));
+    }
+
+    @Override
+    public Shape getClip() {
+        Shape clip = delegate.getClip();
+        return (clip == null) ? null : toLogical().createTransformedShape(clip);
+    }
+
+    @Override
+    public void setClip(Shape clip) {
+        delegate.setClip((clip == null) ? null : toDevice(clip));
+    }
+
+    @Override
+    public void clip(Shape s) {
+        delegate.clip((s == null) ? null : toDevice(s));
+    }
+
+    @Override
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        return delegate.hit(rect, toDevice(s), onStroke);
+    }
+
+    // --- Drawing
+
+    @Override
+    public void draw(Shape s) {
+        delegate.draw(toDevice(s));
+    }
+
+    @Override
+    public void fill(Shape s) {
+        delegate.fill(toDevice(s));
+    }
+
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        delegate.copyArea(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y),
+                x(x + dx) - x(x), y(y + dy) - y(y));
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        if (thinStroke && (x1 == x2 || y1 == y2)) {
+            fillPixels(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2));
+        } else {
+            delegate.drawLine(centreX(x1), centreY(y1), centreX(x2), centreY(y2));
+        }
+    }
+
+    /**
+     * Fills the device pixels of the logical pixels from (x0, y0) to (x1, y1) inclusive.
+     */
+    private void fillPixels(int x0, int y0, int x1, int y1) {
+        delegate.fillRect(x(x0), y(y0), x(x1 + 1) - x(x0), y(y1 + 1) - y(y0));
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        if (width < 0 || height < 0) {
+            return;
+        }
+        if (!thinStroke) {
+            delegate.drawRect(centreX(x), centreY(y),
+                    centreX(x + width) - centreX(x), centreY(y + height) - centreY(y));
+        } else if (width == 0 || height == 0) {
+            fillPixels(x, y, x + width, y + height);
+        } else {
+            fillPixels(x, y, x + width - 1, y);
+            fillPixels(x + width, y, x + width, y + height - 1);
+            fillPixels(x + 1, y + height, x + width, y + height);
+            fillPixels(x, y + 1, x, y + height);
+        }
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        delegate.fillRect(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y));
+    }
+
+    @Override
+    public void clearRect(int x, int y, int width, int height) {
+        delegate.clearRect(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y));
+    }
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        delegate.drawRoundRect(centreX(x), centreY(y),
+                centreX(x + width) - centreX(x), centreY(y + height) - centreY(y),
+                scale(arcWidth), scale(arcHeight));
+    }
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        delegate.fillRoundRect(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y),
+                scale(arcWidth), scale(arcHeight));
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        delegate.drawOval(centreX(x), centreY(y),
+                centreX(x + width) - centreX(x), centreY(y + height) - centreY(y));
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        delegate.fillOval(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y));
+    }
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        delegate.drawArc(centreX(x), centreY(y),
+                centreX(x + width) - centreX(x), centreY(y + height) - centreY(y),
+                startAngle, arcAngle);
+    }
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        delegate.fillArc(x(x), y(y), x(x + width) - x(x), y(y + height) - y(y),
+                startAngle, arcAngle);
+    }
+
+    @Override
+    public void drawPolyline(int[] xs, int[] ys, int nPoints) {
+        mapCentres(xs, ys, nPoints);
+        delegate.drawPolyline(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void drawPolygon(int[] xs, int[] ys, int nPoints) {
+        mapCentres(xs, ys, nPoints);
+        delegate.drawPolygon(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void fillPolygon(int[] xs, int[] ys, int nPoints) {
+        ensurePointCapacity(nPoints);
+        for (int i = 0; i < nPoints; i++) {
+            xPoints[i] = x(xs[i]);
+            yPoints[i] = y(ys[i]);
+        }
+        delegate.fillPolygon(xPoints, yPoints, nPoints);
+    }
+
+    private void mapCentres(int[] xs, int[] ys, int nPoints) {
+        ensurePointCapacity(nPoints);
+        for (int i = 0; i < nPoints; i++) {
+            xPoints[i] = centreX(xs[i]);
+            yPoints[i] = centreY(ys[i]);
+        }
+    }
+
+    private void ensurePointCapacity(int nPoints) {
+        if (xPoints.length < nPoints) {
+            xPoints = new int[nPoints];
+            yPoints = new int[nPoints];
+        }
+    }
+
+    @Override
+    public void drawString(String str, int x, int y) {
+        delegate.drawString(str, x(x), y(y));
+    }
+
+    @Override
+    public void drawString(String str, float x, float y) {
+        delegate.drawString(str, x(x), y(y));
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+        TextLayout layout = new TextLayout(iterator, getFontRenderContext());
+        fill(layout.getOutline(AffineTransform.getTranslateInstance(x, y)));
+    }
+
+    @Override
+    public void drawGlyphVector(GlyphVector g, float x, float y) {
+        fill(g.getOutline(x, y));
+    }
+
+    // --- Images
+
+    @Override
+    public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+        return delegate.drawImage(img, toDevice(xform), obs);
+    }
+
+    @Override
+    public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+        drawImage((op == null) ? img : op.filter(img, null), x, y, null);
+    }
+
+    @Override
+    public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+        delegate.drawRenderedImage(img, toDevice(xform));
+    }
+
+    @Override
+    public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+        delegate.drawRenderableImage(img, toDevice(xform));
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        return drawImage(img, x, y, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(
+            Image img, int x, int y, int width, int height, ImageObserver observer) {
+        return delegate.drawImage(img, x(x), y(y), x(x + width) - x(x), y(y + height) - y(y),
+                observer);
+    }
+
+    /**
+     * Images are treated as having unscaled pixels, so are stretched to the scaled size. Until
+     * the size of an image is known, it is drawn unscaled.
+     */
+    @Override
+    public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+        int width = img.getWidth(observer);
+        int height = img.getHeight(observer);
+        if (width < 0 || height < 0) {
+            return delegate.drawImage(img, x(x), y(y), bgcolor, observer);
+        }
+        return drawImage(img, x, y, width, height, bgcolor, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height,
+            Color bgcolor, ImageObserver observer) {
+        return delegate.drawImage(img, x(x), y(y), x(x + width) - x(x), y(y + height) - y(y),
+                bgcolor, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+            int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        return delegate.drawImage(img, x(dx1), y(dy1), x(dx2), y(dy2),
+                sx1, sy1, sx2, sy2, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+            int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+        return delegate.drawImage(img, x(dx1), y(dy1), x(dx2), y(dy2),
+                sx1, sy1, sx2, sy2, bgcolor, observer);
+    }
+
+    // --- Interning
+
+    private static Interned getInterned(int scaling) {
+        synchronized (s_interned) {
+            int epoch = UiScaling.getEpoch();
+            if (epoch != s_internedEpoch) {
+                s_interned.clear();
+                s_internedEpoch = epoch;
+            }
+            for (int i = 0; i < s_interned.size(); i++) {
+                Interned candidate = s_interned.get(i);
+                if (candidate.scaling == scaling) {
+                    return candidate;
+                }
+            }
+            Interned created = new Interned(scaling);
+            s_interned.add(created);
+            return created;
+        }
+    }
+
+    /**
+     * The scaled fonts and strokes for one scaling, keyed by their unscaled originals. Each map
+     * is cleared when it reaches {@link #MAX_SIZE}, in case of code which paints with ever more
+     * distinct fonts or strokes (e.g. with sizes from an animation).
+     */
+    private static final class Interned {
+        static final int MAX_SIZE = 256;
+
+        final int scaling;
+        final float factor;
+        final ConcurrentMap<Font, Font> fonts = new ConcurrentHashMap<Font, Font>();
+        final ConcurrentMap<Font, Font> unscaledFonts = new ConcurrentHashMap<Font, Font>();
+        final ConcurrentMap<Stroke, ScaledStroke> strokes =
+                new ConcurrentHashMap<Stroke, ScaledStroke>();
+
+        Interned(int scaling) {
+            this.scaling = scaling;
+            this.factor = scaling / 100f;
+        }
+
+        Font getFont(Font font) {
+            Font scaled = fonts.get(font);
+            if (scaled == null) {
+                scaled = font.deriveFont(font.getSize2D() * factor);
+                makeRoom(fonts);
+                Font raced = fonts.putIfAbsent(font, scaled);
+                if (raced != null) {
+                    scaled = raced;
+                }
+            }
+            return scaled;
+        }
+
+        ScaledStroke getStroke(Stroke stroke) {
+            ScaledStroke scaled = strokes.get(stroke);
+            if (scaled == null) {
+                scaled = new ScaledStroke(stroke, factor);
+                makeRoom(strokes);
+                ScaledStroke raced = strokes.putIfAbsent(stroke, scaled);
+                if (raced != null) {
+                    scaled = raced;
+                }
+            }
+            return scaled;
+        }
+
+        /**
+         * @return the unscaled equivalent of a font which is already scaled. Setting it maps
+         *         back to that same font.
+         */
+        Font getUnscaledFont(Font scaled) {
+            Font unscaled = unscaledFonts.get(scaled);
+            if (unscaled == null) {
+                unscaled = scaled.deriveFont(scaled.getSize2D() / factor);
+                makeRoom(unscaledFonts);
+                Font raced = unscaledFonts.putIfAbsent(scaled, unscaled);
+                if (raced != null) {
+                    unscaled = raced;
+                } else {
+                    makeRoom(fonts);
+                    fonts.putIfAbsent(unscaled, scaled);
+                }
+            }
+            return unscaled;
+        }
+
+        private static void makeRoom(Map<?, ?> map) {
+            if (map.size() >= MAX_SIZE) {
+                map.clear();
+            }
+        }
+    }
+
+    /**
+     * A scaled stroke, or the original if it isn't a {@link BasicStroke}, since others can't be.
+     */
+    private static final class ScaledStroke {
+        final Stroke stroke;
+
+        /** Whether the original is an undashed {@link BasicStroke} up to 1 pixel wide. */
+        final boolean thin;
+
+        ScaledStroke(Stroke original, float factor) {
+            if (original instanceof BasicStroke) {
+                BasicStroke basic = (BasicStroke) original;
+                float[] dash = basic.getDashArray();
+                if (dash != null) {
+                    for (int i = 0; i < dash.length; i++) {
+                        dash[i] *= factor;
+                    }
+                }
+                this.stroke = new BasicStroke(basic.getLineWidth() * factor,
+                        basic.getEndCap(), basic.getLineJoin(), basic.getMiterLimit(),
+                        dash, basic.getDashPhase() * factor);
+                this.thin = (dash == null) && basic.getLineWidth() <= 1f;
+            } else {
+                this.stroke = original;
+                this.thin = false;
+            }
+        }
+    }
+
+    /**
+     * A paint whose coordinates are unscaled, such as a gradient, applied to device pixels.
+     */
+    private static final class LogicalPaint implements Paint {
+        private final Paint paint;
+        private final AffineTransform toDevice;
+        private final AffineTransform toLogical;
+
+        LogicalPaint(Paint paint, AffineTransform toDevice, AffineTransform toLogical) {
+            this.paint = paint;
+            this.toDevice = toDevice;
+            this.toLogical = toLogical;
+        }
+
+        @Override
+        public PaintContext createContext(ColorModel cm, Rectangle deviceBounds,
+                Rectangle2D userBounds, AffineTransform xform, RenderingHints hints) {
+            AffineTransform combined = new AffineTransform(xform);
+            combined.concatenate(toDevice);
+            Rectangle2D logicalBounds = toLogical.createTransformedShape(userBounds).getBounds2D();
+            return paint.createContext(cm, deviceBounds, logicalBounds, combined, hints);
+        }
+
+        @Override
+        public int getTransparency() {
+            return paint.getTransparency();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Component;
+
+import javax.swing.Icon;
+import javax.swing.JComponent;
+import javax.swing.LayoutStyle;
+import javax.swing.LookAndFeel;
+import javax.swing.UIDefaults;
+import javax.swing.UIManager;
+import javax.swing.UnsupportedLookAndFeelException;
+import javax.swing.plaf.metal.MetalLookAndFeel;
+import javax.swing.plaf.nimbus.NimbusLookAndFeel;
+
+/**
+ * A L&amp;F which wraps another, and whose {@link #getDefaults()} returns the other's defaults
+ * already scaled and tweaked. (Lazy and active values, which may only resolve once the table is
+ * installed, are scaled as soon as the L&amp;F change has been made.) Installing it is the only pass over the UI: there is no need to
+ * call {@link UiDefaultsScaler#updateAndApplyGlobalScaling(int, boolean)} and then update every
+ * component a second time.
+ * <pre>
+ *     ScalingLookAndFeel.install(new NimbusLookAndFeel(), 150, true);
+ * </pre>
+ * Metal and Nimbus are wrapped by subclassing, since parts of them (notably Synth's style
+ * updates) test the class of the installed L&amp;F. Other L&amp;Fs (including Windows, which can
+ * not be subclassed portably) are wrapped by delegation, so code which tests the installed L&amp;F
+ * with {@code instanceof} will not recognise them.
+ * <p>
+ * To change the scaling later, call {@code updateAndApplyGlobalScaling} as usual, which
+ * rescales the installed defaults in place.
+ */
+public final class ScalingLookAndFeel extends LookAndFeel {
+
+    private final LookAndFeel delegate;
+    private final int scalingPercentage;
+    private final boolean alsoTweak;
+
+    private ScalingLookAndFeel(LookAndFeel delegate, int scalingInPercent, boolean alsoTweak) {
+        this.delegate = delegate;
+        this.scalingPercentage = scalingInPercent;
+        this.alsoTweak = alsoTweak;
+    }
+
+    /**
+     * @param laf the L&amp;F to wrap, which should not be installed already
+     * @param scalingInPercent the scaling to apply, where 100 represents 96 DPI
+     * @param alsoTweak as per {@link UiDefaultsScaler#updateAndApplyGlobalScaling(int, boolean)}
+     * @return a L&amp;F which scales the defaults of {@code laf}; not necessarily an instance of
+     *         this class.
+     */
+    public static LookAndFeel create(LookAndFeel laf, int scalingInPercent, boolean alsoTweak) {
+        laf = getUnscaledLookAndFeel(laf);
+        if (laf.getClass() == MetalLookAndFeel.class) {
+            return new ScalingMetalLookAndFeel(scalingInPercent, alsoTweak);
+        }
+        if (laf.getClass() == NimbusLookAndFeel.class) {
+            return new ScalingNimbusLookAndFeel(scalingInPercent, alsoTweak);
+        }
+        return new ScalingLookAndFeel(laf, scalingInPercent, alsoTweak);
+    }
+
+    /**
+     * Installs a scaling wrapper of the given L&amp;F, which also sets the global scaling.
+     *
+     * @see #create(LookAndFeel, int, boolean)
+     */
+    public static void install(LookAndFeel laf, int scalingInPercent, boolean alsoTweak)
+            throws UnsupportedLookAndFeelException {
+        UIManager.setLookAndFeel(create(laf, scalingInPercent, alsoTweak));
+    }
+
+    /**
+     * @return whether the L&amp;F was created by {@link #create(LookAndFeel, int, boolean)}
+     */
+    public static boolean isScaling(LookAndFeel laf) {
+        return laf instanceof ScalingLookAndFeel ||
+                laf instanceof ScalingMetalLookAndFeel ||
+                laf instanceof ScalingNimbusLookAndFeel;
+    }
+
+    /**
+     * @return a L&amp;F whose {@link #getDefaults()} are unscaled, and equivalent to those which
+     *         {@code laf} is based on. This is {@code laf} itself, unless it is a scaling L&amp;F.
+     */
+    static LookAndFeel getUnscaledLookAndFeel(LookAndFeel laf) {
+        if (laf instanceof ScalingLookAndFeel) {
+            return ((ScalingLookAndFeel) laf).delegate;
+        }
+        if (laf instanceof ScalingMetalLookAndFeel) {
+            return new MetalLookAndFeel();
+        }
+        if (laf instanceof ScalingNimbusLookAndFeel) {
+            return new NimbusLookAndFeel();
+        }
+        return laf;
+    }
+
+    @Override
+    public UIDefaults getDefaults() {
+        UIDefaults defaults = delegate.getDefaults();
+        UiDefaultsScaler.applyGlobalScalingOnInstall(
+                defaults, delegate, scalingPercentage, alsoTweak);
+        return defaults;
+    }
+
+    @Override
+    public void initialize() {
+        delegate.initialize();
+    }
+
+    @Override
+    public void uninitialize() {
+        delegate.uninitialize();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public String getID() {
+        return delegate.getID();
+    }
+
+    @Override
+    public String getDescription() {
+        return delegate.getDescription();
+    }
+
+    @Override
+    public boolean isNativeLookAndFeel() {
+        return delegate.isNativeLookAndFeel();
+    }
+
+    @Override
+    public boolean isSupportedLookAndFeel() {
+        return delegate.isSupportedLookAndFeel();
+    }
+
+    @Override
+    public boolean getSupportsWindowDecorations() {
+        return delegate.getSupportsWindowDecorations();
+    }
+
+    @Override
+    public LayoutStyle getLayoutStyle() {
+        return delegate.getLayoutStyle();
+    }
+
+    @Override
+    public void provideErrorFeedback(Component component) {
+        delegate.provideErrorFeedback(component);
+    }
+
+    @Override
+    public Icon getDisabledIcon(JComponent component, Icon icon) {
+        return delegate.getDisabledIcon(component, icon);
+    }
+
+    @Override
+    public Icon getDisabledSelectedIcon(JComponent component, Icon icon) {
+        return delegate.getDisabledSelectedIcon(component, icon);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString() + " @ " + scalingPercentage + "%";
+    }
+
+    private static final class ScalingMetalLookAndFeel extends MetalLookAndFeel {
+        private final int scalingPercentage;
+        private final boolean alsoTweak;
+
+        ScalingMetalLookAndFeel(int scalingInPercent, boolean alsoTweak) {
+            this.scalingPercentage = scalingInPercent;
+            this.alsoTweak = alsoTweak;
+        }
+
+        @Override
+        public UIDefaults getDefaults() {
+            UIDefaults defaults = super.getDefaults();
+            UiDefaultsScaler.applyGlobalScalingOnInstall(
+                    defaults, this, scalingPercentage, alsoTweak);
+            return defaults;
+        }
+    }
+
+    private static final class ScalingNimbusLookAndFeel extends NimbusLookAndFeel {
+        private final int scalingPercentage;
+        private final boolean alsoTweak;
+
+        /**
+         * Nimbus returns the same table from each call (including calls made while it is being
+         * scaled) which need only be scaled once.
+         */
+        private UIDefaults scaledDefaults;
+
+        ScalingNimbusLookAndFeel(int scalingInPercent, boolean alsoTweak) {
+            this.scalingPercentage = scalingInPercent;
+            this.alsoTweak = alsoTweak;
+        }
+
+        @Override
+        public UIDefaults getDefaults() {
+            UIDefaults defaults = super.getDefaults();
+            if (defaults != scaledDefaults) {
+                scaledDefaults = defaults;
+                UiDefaultsScaler.applyGlobalScalingOnInstall(
+                        defaults, this, scalingPercentage, alsoTweak);
+            }
+            return defaults;
+        }
+    }
+}
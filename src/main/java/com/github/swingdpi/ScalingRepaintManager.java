@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+
+/**
+ * Maps the dirty regions of components within the content of a {@link ScaledContentPane} to the
+ * (scaled) area of the pane they are painted to. Everything else is handled as usual.
+ * <p>
+ * Threading: as for {@link RepaintManager}.
+ */
+final class ScalingRepaintManager extends RepaintManager {
+
+    /**
+     * Makes a {@link ScalingRepaintManager} the current manager, if it isn't already, carrying
+     * over the double-buffering settings of the previous one.
+     */
+    static void install() {
+        assert SwingUtilities.isEventDispatchThread();
+
+        RepaintManager current = RepaintManager.currentManager((JComponent) null);
+        if (!(current instanceof ScalingRepaintManager)) {
+            ScalingRepaintManager manager = new ScalingRepaintManager();
+            manager.setDoubleBufferingEnabled(current.isDoubleBufferingEnabled());
+            manager.setDoubleBufferMaximumSize(current.getDoubleBufferMaximumSize());
+            RepaintManager.setCurrentManager(manager);
+        }
+    }
+
+    @Override
+    public void addDirtyRegion(JComponent c, int x, int y, int w, int h) {
+        ScaledContentPane pane = ScaledContentPane.getScalingAncestor(c);
+        if (pane == null) {
+            super.addDirtyRegion(c, x, y, w, h);
+            return;
+        }
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+
+        // Recurse, in case the pane is itself within the content of another
+        Rectangle area = pane.toPane(c, new Rectangle(x, y, w, h));
+        if (area != null) {
+            addDirtyRegion(pane, area.x, area.y, area.width, area.height);
+        }
+    }
+}
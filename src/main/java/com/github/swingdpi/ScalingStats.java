@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.github.swingdpi.plaf.ScaledFontUIResource;
+import com.github.swingdpi.util.IconAtlas;
+import com.github.swingdpi.util.ScaledIcon;
+
+/**
+ * A management bean reporting how much memory the library holds (in scaled icon rasters and
+ * fonts), and allowing caches to be purged, e.g. from JConsole or VisualVM. It is not registered
+ * automatically: call {@link #register()} at startup.
+ */
+public final class ScalingStats implements ScalingStatsMBean {
+
+    public static final String OBJECT_NAME = "com.github.swingdpi:type=ScalingStats";
+
+    private ScalingStats() {}
+
+    /**
+     * Registers the bean with the platform MBean server, unless it is already registered.
+     */
+    public static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new ScalingStats(), getObjectName());
+        } catch (InstanceAlreadyExistsException ignored) {
+            // Ignore
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register " + OBJECT_NAME, e);
+        }
+    }
+
+    public static void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(getObjectName());
+        } catch (InstanceNotFoundException ignored) {
+            // Ignore
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    private static ObjectName getObjectName() throws MalformedObjectNameException {
+        return new ObjectName(OBJECT_NAME);
+    }
+
+    @Override
+    public int getScaling() {
+        return UiScaling.getScaling();
+    }
+
+    @Override
+    public int getEpoch() {
+        return UiScaling.getEpoch();
+    }
+
+    @Override
+    public int getEnabledIconRasterCount() {
+        return ScaledIcon.getCacheStatistics().getEnabledCount();
+    }
+
+    @Override
+    public long getEnabledIconRasterBytes() {
+        return ScaledIcon.getCacheStatistics().getEnabledBytes();
+    }
+
+    @Override
+    public int getDisabledIconRasterCount() {
+        return ScaledIcon.getCacheStatistics().getDisabledCount();
+    }
+
+    @Override
+    public long getDisabledIconRasterBytes() {
+        return ScaledIcon.getCacheStatistics().getDisabledBytes();
+    }
+
+    @Override
+    public long getIconCacheHits() {
+        return ScaledIcon.getCacheStatistics().getHits();
+    }
+
+    @Override
+    public long getIconCacheMisses() {
+        return ScaledIcon.getCacheStatistics().getMisses();
+    }
+
+    @Override
+    public int getIconAtlasPageCount() {
+        return IconAtlas.getPageCount();
+    }
+
+    @Override
+    public long getIconAtlasBytes() {
+        return IconAtlas.getBytes();
+    }
+
+    @Override
+    public int getLiveScaledFontCount() {
+        return ScaledFontUIResource.getLiveInstanceCount();
+    }
+
+    @Override
+    public long getLastFontWarmUpMillis() {
+        return FontWarmer.getLastDurationMillis();
+    }
+
+    @Override
+    public void clearCaches() {
+        ScaledIcon.clearCaches();
+        IconAtlas.clear();
+    }
+
+    @Override
+    public void trimCaches() {
+        ScaledIcon.trimCaches();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi;
+
+/**
+ * The management interface of {@link ScalingStats}: memory and cache statistics of this library.
+ */
+public interface ScalingStatsMBean {
+
+    int getScaling();
+
+    /** @see UiScaling#getEpoch() */
+    int getEpoch();
+
+    int getEnabledIconRasterCount();
+
+    long getEnabledIconRasterBytes();
+
+    int getDisabledIconRasterCount();
+
+    long getDisabledIconRasterBytes();
+
+    long getIconCacheHits();
+
+    long getIconCacheMisses();
+
+    int getIconAtlasPageCount();
+
+    long getIconAtlasBytes();
+
+    int getLiveScaledFontCount();
+
+    /** @return the duration of the last font warm-up, or -1 if there hasn't been one. */
+    long getLastFontWarmUpMillis();
+
+    /** Drops all cached icon rasters, including the icon atlas. */
+    void clearCaches();
+
+    /** Drops the cached icon rasters which have not been painted since the last trim. */
+    void trimCaches();
+}
@@ -23,12 +23,29 @@ package com.github.swingdpi;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Insets;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.swing.Icon;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JRadioButton;
+import javax.swing.JToggleButton;
+import javax.swing.LookAndFeel;
 import javax.swing.UIDefaults;
 import javax.swing.UIManager;
+import javax.swing.border.Border;
+import javax.swing.plaf.nimbus.NimbusLookAndFeel;
+import javax.swing.plaf.synth.SynthLookAndFeel;
 
 import com.github.swingdpi.plaf.BasicTweaker;
 import com.github.swingdpi.plaf.MetalTweaker;
@@ -50,24 +67,167 @@ import com.github.swingdpi.plaf.WindowsTweaker;
  */
 public class UiDefaultsScaler {
 
+    /** Whether the global scaling was last applied with the extra tweaks. */
+    private static volatile boolean s_globalTweaks = false;
+
     private final Tweaker delegate;
+    private final UIDefaults defaults;
+
+    /** Whether lazy and active values are resolved, so that they may be scaled. */
+    private final boolean resolveLazyValues;
 
-    private UiDefaultsScaler(Tweaker delegate) {
+    private UiDefaultsScaler(Tweaker delegate, UIDefaults defaults, boolean resolveLazyValues) {
         this.delegate = delegate;
+        this.defaults = defaults;
+        this.resolveLazyValues = resolveLazyValues;
     }
 
+    /**
+     * Scales the installed L&amp;F's defaults. This may be called again to change the scaling,
+     * without first re-installing the L&amp;F: each scaling is computed from the original values.
+     * Components then need {@code updateUI} to pick up the new values.
+     * <p>
+     * Synth L&amp;Fs cache the styles they derive from the defaults, so rescaling one means
+     * installing a new instance. That is only done for Nimbus and the
+     * {@link ScalingLookAndFeel scaling L&amp;Fs}: other Synth L&amp;Fs may have been configured
+     * (e.g. with {@link SynthLookAndFeel#load}) in ways a new instance would lose. To rescale one
+     * of those, configure and install it again, then call this.
+     *
+     * @throws UnsupportedOperationException to rescale any other Synth L&amp;F
+     */
     public static void updateAndApplyGlobalScaling(int scalingInPercent, boolean alsoTweak) {
-        float scaleFactor = scalingInPercent / 100f;
+        LookAndFeel laf = UIManager.getLookAndFeel();
+        if (laf instanceof SynthLookAndFeel &&
+                Originals.isRecorded(UIManager.getLookAndFeelDefaults())) {
 
-        BasicTweaker tweaker = createTweakerForCurrentLook(scaleFactor);
-        tweaker.setDoExtraTweaks(alsoTweak);
+            // Synth caches the styles it derives from the defaults, with no way to reset them
+            reinstallLookAndFeel(laf, scalingInPercent, alsoTweak);
+            return;
+        }
+        applyGlobalScaling(UIManager.getLookAndFeelDefaults(), laf, scalingInPercent, alsoTweak);
+        refreshSharedUis();
+    }
 
-        UiDefaultsScaler scaler = new UiDefaultsScaler(tweaker);
-        scaler.applyScalingAndTweaks();
+    private static void reinstallLookAndFeel(
+            LookAndFeel laf, int scalingInPercent, boolean alsoTweak) {
+        boolean scaling = ScalingLookAndFeel.isScaling(laf);
+        if (!scaling && laf.getClass() != NimbusLookAndFeel.class) {
+            throw new UnsupportedOperationException("Can not rescale " + laf + ", since it may " +
+                    "not be re-created without losing its configuration: install it again first");
+        }
+        try {
+            if (scaling) {
+                ScalingLookAndFeel.install(laf, scalingInPercent, alsoTweak);
+            } else {
+                UIManager.setLookAndFeel(new NimbusLookAndFeel());
+                applyGlobalScaling(UIManager.getLookAndFeelDefaults(), UIManager.getLookAndFeel(),
+                        scalingInPercent, alsoTweak);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Can not re-install " + laf, e);
+        }
+    }
+
+    /**
+     * Some UI delegates are shared by every component of a type, and read their defaults only
+     * once until they are next uninstalled. Cycling the UI of a throwaway component makes them
+     * read the newly scaled values.
+     */
+    private static void refreshSharedUis() {
+        JComponent[] components = {
+            new JButton(), new JToggleButton(), new JCheckBox(), new JRadioButton()
+        };
+        for (JComponent c : components) {
+            c.updateUI();
+        }
+    }
+
+    /**
+     * As {@link #applyScaling}, for the table which is installed as the global one.
+     */
+    static void applyGlobalScaling(
+            UIDefaults defaults, LookAndFeel laf, int scalingInPercent, boolean alsoTweak) {
+        applyScaling(defaults, laf, scalingInPercent, alsoTweak);
+        setGlobalScaling(defaults, scalingInPercent, alsoTweak);
+    }
+
+    /**
+     * As {@link #applyGlobalScaling}, for a table which is about to be installed: that is, one
+     * returned from {@link LookAndFeel#getDefaults()}, which {@code UIManager.setLookAndFeel} calls
+     * before installing the table.
+     * <p>
+     * Some lazy and active values only resolve once their table is installed. (For example,
+     * depending on the JDK, borders which read the installed defaults, and cell renderers which
+     * build components.) So those are left unscaled for now, and are scaled once the L&amp;F
+     * change has been made, if the table was indeed installed.
+     */
+    static void applyGlobalScalingOnInstall(final UIDefaults defaults, final LookAndFeel laf,
+            final int scalingInPercent, final boolean alsoTweak) {
+        applyScaling(defaults, laf, scalingInPercent, alsoTweak, false);
+        setGlobalScaling(defaults, scalingInPercent, alsoTweak);
+
+        UIManager.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent e) {
+                if ("lookAndFeel".equals(e.getPropertyName())) {
+                    UIManager.removePropertyChangeListener(this);
+                    if (UIManager.getLookAndFeelDefaults() == defaults) {
+                        applyScaling(defaults, laf, scalingInPercent, alsoTweak);
+                    }
+                }
+            }
+        });
+    }
+
+    private static void setGlobalScaling(
+            UIDefaults defaults, int scalingInPercent, boolean alsoTweak) {
+        s_globalTweaks = alsoTweak;
 
         // Updates the global constant, which can be used for apply scaling to UI elements not
         // covered by the UIDefaults. This also fires a notification event to anyone interested.
         UiScaling.setScaling(scalingInPercent);
+
+        if (FontWarmer.isEnabled()) {
+            FontWarmer.warmUp(defaults);
+        }
+    }
+
+    /**
+     * @return the {@code alsoTweak} which the global scaling was last applied with.
+     */
+    static boolean isGlobalTweaking() {
+        return s_globalTweaks;
+    }
+
+    /**
+     * Scales and tweaks a defaults table in-place. The table need not be the one currently
+     * installed in the UIManager (see {@link ScaleContext}) but it must have been created by
+     * {@code laf}.
+     * <p>
+     * The first call records the table's original values. Each call then tweaks a scratch copy
+     * of those originals, and commits the result to the table in one bulk update. So the table
+     * may be rescaled any number of times, and values which an earlier scaling changed but the
+     * current one does not are restored.
+     */
+    static void applyScaling(
+            UIDefaults defaults, LookAndFeel laf, int scalingInPercent, boolean alsoTweak) {
+        applyScaling(defaults, laf, scalingInPercent, alsoTweak, true);
+    }
+
+    private static void applyScaling(UIDefaults defaults, LookAndFeel laf, int scalingInPercent,
+            boolean alsoTweak, boolean resolveLazyValues) {
+        float scaleFactor = scalingInPercent / 100f;
+
+        Originals originals = Originals.get(defaults);
+        UIDefaults scratch = originals.createScratchTable();
+
+        BasicTweaker tweaker = createTweakerForLook(laf, scratch, scaleFactor);
+        tweaker.setDoExtraTweaks(alsoTweak);
+
+        UiDefaultsScaler scaler = new UiDefaultsScaler(tweaker, scratch, resolveLazyValues);
+        scaler.applyScalingAndTweaks();
+
+        originals.commit(scratch, defaults);
     }
 
     private void applyScalingAndTweaks() {
@@ -76,36 +236,170 @@ public class UiDefaultsScaler {
         delegate.finalTweaks();
     }
 
-    private static BasicTweaker createTweakerForCurrentLook(float dpiScaling) {
-        String testString = UIManager.getLookAndFeel().getName().toLowerCase();
+    private static BasicTweaker createTweakerForLook(
+            LookAndFeel laf, UIDefaults defaults, float dpiScaling) {
+        String testString = laf.getName().toLowerCase();
         if (testString.contains("windows")) {
-            return new WindowsTweaker(dpiScaling, testString.contains("classic"));
+            return new WindowsTweaker(dpiScaling, testString.contains("classic"), defaults);
         }
         if (testString.contains("metal")) {
-            return new MetalTweaker(dpiScaling);
+            return new MetalTweaker(dpiScaling, defaults);
         }
         if (testString.contains("nimbus")) {
-            return new NimbusTweaker(dpiScaling);
+            return new NimbusTweaker(dpiScaling, defaults);
         }
-        return new BasicTweaker(dpiScaling);
+        return new BasicTweaker(dpiScaling, defaults);
     }
 
     private void modifyDefaults(Tweaker tweaker) {
-        UIDefaults defaults = UIManager.getLookAndFeelDefaults();
 
         // Used to replicate aliased-references to the same object wherever the original did this.
         IdentityHashMap<Object, Object> identityMap = new IdentityHashMap<Object, Object>();
 
-        for (Object key: Collections.list(defaults.keys())) {
-            Object original = defaults.get(key);
-            if (identityMap.keySet().contains(original)) {
+        List<Object> changes = new ArrayList<Object>();
+        for (Map.Entry<Object, Object> entry : getRawValues(defaults).entrySet()) {
+            Object key = entry.getKey();
+            Object original = getValue(key, entry.getValue());
+            if (original == null || BasicTweaker.isScaledValue(original)) {
                 continue;
             }
-            Object newValue = modifyValueUsingDelegate(tweaker, key, original);
+            Object newValue = identityMap.get(original);
+            if (newValue == null || !(original instanceof Icon || original instanceof Border)) {
+
+                // Other values' tweaks may depend on the key; an equal result is still shared
+                Object modified = modifyValueUsingDelegate(tweaker, key, original);
+                if (newValue == null || !newValue.equals(modified)) {
+                    newValue = modified;
+                }
+                if (newValue != null && !(original instanceof Integer)) {
+                    identityMap.put(original, newValue);
+                }
+            }
             if (newValue != null && newValue != original) {
-                defaults.put(key, newValue);
+                changes.add(key);
+                changes.add(newValue);
             }
         }
+        defaults.putDefaults(changes.toArray());
+    }
+
+    /**
+     * Like {@link UIDefaults#get(Object)}, except for lazy and active values. Those are not
+     * resolved at all unless {@link #resolveLazyValues}, and any which fail to resolve are treated
+     * as not scalable (and {@code null} is returned) since some, such as cell renderers, are
+     * never scaled anyway and only fail outside of the installed table's L&amp;F.
+     *
+     * @param rawValue the value as stored in the table, i.e. before lazy or active values are
+     *        resolved
+     */
+    private Object getValue(Object key, Object rawValue) {
+        if (!(rawValue instanceof UIDefaults.LazyValue) &&
+                !(rawValue instanceof UIDefaults.ActiveValue)) {
+            return defaults.get(key);
+        }
+        if (!resolveLazyValues) {
+            return null;
+        }
+        try {
+            return defaults.get(key);
+        } catch (RuntimeException e) {
+            return null;
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Error e) {
+            // E.g. "no ComponentUI class", from a component built outside of its L&F
+            return null;
+        }
+    }
+
+    /**
+     * @return the entries of a defaults table, with lazy and active values left unresolved (and
+     *         without the library's own bookkeeping).
+     */
+    static Map<Object, Object> getRawValues(UIDefaults defaults) {
+        return Originals.getRawValues(defaults);
+    }
+
+    /**
+     * The unscaled values of a defaults table, which is stored in the table itself.
+     */
+    private static final class Originals {
+
+        /** Scratch copies must not carry this, so it's not stored under a String key. */
+        private static final Object KEY = Originals.class;
+
+        /** The raw (possibly lazy) values, as they were before the first scaling. */
+        private final Map<Object, Object> values;
+
+        /** The keys which the last scaling changed from their original values. */
+        private Set<Object> changedKeys = Collections.emptySet();
+
+        private Originals(Map<Object, Object> values) {
+            this.values = values;
+        }
+
+        static boolean isRecorded(UIDefaults defaults) {
+            return defaults.get(KEY) instanceof Originals;
+        }
+
+        static Originals get(UIDefaults defaults) {
+            Object stored = defaults.get(KEY);
+            if (stored instanceof Originals) {
+                return (Originals) stored;
+            }
+            Originals originals = new Originals(getRawValues(defaults));
+            defaults.put(KEY, originals);
+            return originals;
+        }
+
+        /**
+         * Unlike {@link UIDefaults#get(Object)}, this leaves lazy and active values unresolved.
+         */
+        private static Map<Object, Object> getRawValues(UIDefaults defaults) {
+            Map<Object, Object> values = new HashMap<Object, Object>(defaults.size() * 2);
+            for (Map.Entry<Object, Object> entry : defaults.entrySet()) {
+                if (entry.getKey() != KEY) {
+                    values.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return values;
+        }
+
+        UIDefaults createScratchTable() {
+            Object[] keysAndValues = new Object[values.size() * 2];
+            int i = 0;
+            for (Map.Entry<Object, Object> entry : values.entrySet()) {
+                keysAndValues[i++] = entry.getKey();
+                keysAndValues[i++] = entry.getValue();
+            }
+            UIDefaults scratch = new UIDefaults(values.size() * 2, 0.75f);
+            scratch.putDefaults(keysAndValues);
+            return scratch;
+        }
+
+        /**
+         * Copies the values which the tweakers changed in the scratch table to the target,
+         * along with the originals of any values which only an earlier scaling had changed.
+         */
+        void commit(UIDefaults scratch, UIDefaults target) {
+            Map<Object, Object> scaled = getRawValues(scratch);
+            Set<Object> changed = new HashSet<Object>();
+            for (Map.Entry<Object, Object> entry : scaled.entrySet()) {
+                if (entry.getValue() != values.get(entry.getKey())) {
+                    changed.add(entry.getKey());
+                }
+            }
+
+            Set<Object> keys = new HashSet<Object>(changed);
+            keys.addAll(changedKeys);
+            List<Object> keysAndValues = new ArrayList<Object>(keys.size() * 2);
+            for (Object key : keys) {
+                keysAndValues.add(key);
+                keysAndValues.add(scaled.get(key));
+            }
+            target.putDefaults(keysAndValues.toArray());
+            changedKeys = changed;
+        }
     }
 
     /**
@@ -128,6 +422,9 @@ public class UiDefaultsScaler {
         if (original instanceof Insets) {
             return tweaker.modifyInsets(key, (Insets) original);
         }
+        if (original instanceof Border) {
+            return tweaker.modifyBorder(key, (Border) original);
+        }
         return null;
     }
 }
@@ -21,8 +21,11 @@
 package com.github.swingdpi;
 
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -40,11 +43,25 @@ import javax.swing.event.ChangeListener;
 public class UiScaling {
     private UiScaling() {}
 
+    /**
+     * A system property which, if set to a percentage, is used as the initial scaling instead of
+     * querying the display. E.g. {@code -Dswingdpi.scaling=150}
+     */
+    public static final String SCALING_PROPERTY = "swingdpi.scaling";
+
+    private static final int UNRESOLVED = 0;
+
     /**
      * Scaling in integer percentage points; so 100 results in the 'standard' setting of 96 DPI.
+     * <p>
+     * This is resolved lazily, since querying the display initialises the AWT Toolkit. Classes
+     * which merely call {@link #scale(int)}, say in a report or command-line code path, shouldn't
+     * pay for that (or fail when headless).
      */
-    private static final AtomicInteger s_scalingPercentage = 
-            new AtomicInteger(DpiUtils.getClosestStandardScaling());
+    private static final AtomicInteger s_scalingPercentage = new AtomicInteger(UNRESOLVED);
+
+    /** Incremented whenever the scaling changes. */
+    private static final AtomicInteger s_epoch = new AtomicInteger();
 
     /**
      * Threading: all access must synchronize on this final member
@@ -62,18 +79,76 @@ public class UiScaling {
      * @return the currently-set scaling in percentage points.
      */
     public static int getScaling() {
+        int scaling = s_scalingPercentage.get();
+        return (scaling != UNRESOLVED) ? scaling : resolveInitialScaling();
+    }
+
+    /**
+     * Sets the initial scaling, without querying the display or notifying listeners. This has no
+     * effect if the scaling has already been used or set.
+     *
+     * @return whether the given value was applied
+     * @throws IllegalArgumentException if the scaling is not positive
+     */
+    public static boolean initialize(int scalingInPercent) {
+        if (scalingInPercent <= 0) {
+            throw new IllegalArgumentException("scaling: " + scalingInPercent);
+        }
+        return s_scalingPercentage.compareAndSet(UNRESOLVED, scalingInPercent);
+    }
+
+    private static int resolveInitialScaling() {
+        s_scalingPercentage.compareAndSet(UNRESOLVED, detectInitialScaling());
         return s_scalingPercentage.get();
     }
 
+    private static int detectInitialScaling() {
+        String property = System.getProperty(SCALING_PROPERTY);
+        if (property != null) {
+            try {
+                int scaling = Integer.parseInt(property.trim());
+                if (scaling > 0) {
+                    return scaling;
+                }
+            } catch (NumberFormatException ignored) {
+                // Ignore
+            }
+        }
+        return DpiUtils.getClosestStandardScaling();
+    }
+
+    /**
+     * @return the scaling in percentage points of the {@link ScaleContext} which {@code c} belongs
+     *         to, or the global scaling if it is not within any bound context.
+     */
+    public static int getScaling(Component c) {
+        ScaleContext context = ScaleContext.get(c);
+        return (context == null) ? getScaling() : context.getScaling();
+    }
+
+    public static float getScalingFactor(Component c) {
+        return getScaling(c) / 100f;
+    }
+
     public static void setScaling(int scalingInPercent) {
         assert SwingUtilities.isEventDispatchThread();
 
         int old = s_scalingPercentage.getAndSet(scalingInPercent);
         if (old != scalingInPercent) {
+            s_epoch.incrementAndGet();
             notifyListeners();
         }
     }
 
+    /**
+     * @return a counter which is incremented each time the scaling is changed. Caches of values
+     *         derived from the scaling can record this to tell whether they are stale, even if
+     *         the scaling has since returned to the same level.
+     */
+    public static int getEpoch() {
+        return s_epoch.get();
+    }
+
     /**
      * Public to allow users to notify listeners of similar events (like L&F changes) without
      * needing a second listener & event to register on. (For better or worse.)
@@ -111,12 +186,42 @@ public class UiScaling {
         }
     }
 
+    /**
+     * Creates a graphics for painting with unscaled coordinates, sizes, fonts and strokes at the
+     * current scaling, instead of scaling each value in turn. See {@link ScaledGraphics}.
+     * <p>
+     * The result paints through a copy of {@code g}, so it may be changed freely, and should be
+     * disposed of when done.
+     */
+    public static ScaledGraphics createGraphics(Graphics g) {
+        return new ScaledGraphics((Graphics2D) g.create(), getScaling());
+    }
+
+    /**
+     * As {@link #createGraphics(Graphics)}, at the scaling which applies to the given component;
+     * see {@link #getScaling(Component)}.
+     */
+    public static ScaledGraphics createGraphics(Component c, Graphics g) {
+        return new ScaledGraphics((Graphics2D) g.create(), getScaling(c));
+    }
+
     public static Dimension newDimension(int width, int height) {
         return scale(new Dimension(width, height));
     }
 
     public static int scale(int i) {
-        return Math.round((i * getScaling()) / 100f);
+        return scale(i, getScaling());
+    }
+
+    /**
+     * Scales by the level applying to the given component; see {@link #getScaling(Component)}.
+     */
+    public static int scale(Component c, int i) {
+        return scale(i, getScaling(c));
+    }
+
+    static int scale(int i, int scalingInPercent) {
+        return Math.round((i * scalingInPercent) / 100f);
     }
 
     public static float scale(float f) {
@@ -30,12 +30,20 @@ import java.util.List;
 import javax.swing.Icon;
 import javax.swing.UIDefaults;
 import javax.swing.UIManager;
+import javax.swing.border.Border;
+import javax.swing.border.CompoundBorder;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.TitledBorder;
+import javax.swing.plaf.BorderUIResource;
 import javax.swing.plaf.DimensionUIResource;
 import javax.swing.plaf.FontUIResource;
 import javax.swing.plaf.InsetsUIResource;
 import javax.swing.plaf.UIResource;
+import javax.swing.plaf.basic.BasicBorders;
+import javax.swing.plaf.metal.MetalBorders;
 
 import com.github.swingdpi.DpiUtils;
+import com.github.swingdpi.util.RescalableIcon;
 import com.github.swingdpi.util.ScaledIcon;
 
 
@@ -56,15 +64,41 @@ public class BasicTweaker implements Tweaker {
             "Spinner.arrowButtonInsets"
     );
 
+    /**
+     * Borders whose insets include the component's margin, which the tweakers scale already.
+     * Their subclasses are included.
+     */
+    private static final List<Class<?>> MARGIN_BORDERS = Arrays.<Class<?>>asList(
+            BasicBorders.MarginBorder.class,
+            BasicBorders.FieldBorder.class,
+            MetalBorders.ToolBarBorder.class
+    );
+
+    /** As {@link #MARGIN_BORDERS}, for those classes which are not public. */
+    private static final List<String> MARGIN_BORDER_CLASS_NAMES = Arrays.asList(
+            "javax.swing.plaf.basic.BasicBorders$RolloverMarginBorder",
+            "javax.swing.plaf.metal.MetalBorders$RolloverMarginBorder",
+            "javax.swing.plaf.synth.SynthBorder",
+            "com.sun.java.swing.plaf.windows.XPStyle$XPFillBorder",
+            "com.sun.java.swing.plaf.windows.XPStyle$XPImageBorder",
+            "com.sun.java.swing.plaf.windows.XPStyle$XPEmptyBorder"
+    );
+
     protected final float scaleFactor;
 
-    protected final UIDefaults uiDefaults = UIManager.getLookAndFeelDefaults();
+    /** The table being tweaked: usually, but not necessarily, the one installed in UIManager. */
+    protected final UIDefaults uiDefaults;
 
     /** Whether to perform other 'beautification' tweaks in addition to pure scaling tweaks. */
     protected boolean doExtraTweaks = true;
 
     public BasicTweaker(float scaleFactor) {
+        this(scaleFactor, UIManager.getLookAndFeelDefaults());
+    }
+
+    public BasicTweaker(float scaleFactor, UIDefaults uiDefaults) {
         this.scaleFactor = scaleFactor;
+        this.uiDefaults = uiDefaults;
     }
 
     @Override
@@ -112,11 +146,26 @@ public class BasicTweaker implements Tweaker {
         return newScaledIconUIResource(original, scale);
     }
 
+    /**
+     * @return whether the value was created by a tweaker. Such values can turn up while tweaking
+     *         when one default links to another (as Nimbus does, via the installed defaults).
+     */
+    public static boolean isScaledValue(Object value) {
+        return value instanceof ScaledIconUIResource ||
+                value instanceof ScaledNimbusIcon ||
+                value instanceof ScaledBorderUIResource ||
+                value instanceof ScaledFontUIResource ||
+                value instanceof ScaledIcon;
+    }
+
     protected static Icon newScaledIconUIResource(Icon original, float scale) {
         if (isUnscaled(scale) && original instanceof UIResource) {
             return original;
         }
-        return new ScaledIconUIResource(new ScaledIcon(original, scale));
+        if (original instanceof RescalableIcon) {
+            return new ScaledIconUIResource(((RescalableIcon) original).withScale(scale));
+        }
+        return new ScaledIconUIResource(ScaledIcon.intern(original, scale));
     }
 
     @Override
@@ -161,6 +210,58 @@ public class BasicTweaker implements Tweaker {
                 Math.round(scaleFactor * insets.right));
     }
 
+    /**
+     * Empty and compound borders are rebuilt with scaled insets; others are wrapped, so that
+     * their insets are scaled and their strokes are painted at the scaled width. Borders which
+     * add the component's margin (which the tweakers scale already) and titled borders (whose
+     * font is scaled already) are left alone.
+     */
+    @Override
+    public Border modifyBorder(Object key, Border original) {
+        if (isUnscaled(scaleFactor) || DpiUtils.isPerMonitorDpiActive()) {
+            return original;
+        }
+        return newScaledBorder(original, scaleFactor);
+    }
+
+    protected static Border newScaledBorder(Border original, float scale) {
+        if (original instanceof CompoundBorder) {
+            CompoundBorder compound = (CompoundBorder) original;
+            return new BorderUIResource.CompoundBorderUIResource(
+                    newScaledBorder(compound.getOutsideBorder(), scale),
+                    newScaledBorder(compound.getInsideBorder(), scale));
+        }
+        if (original == null || original instanceof TitledBorder ||
+                includesMargin(original) ||
+                original instanceof ScaledBorderUIResource) {
+            return original;
+        }
+        if (original.getClass() == EmptyBorder.class ||
+                original.getClass() == BorderUIResource.EmptyBorderUIResource.class) {
+            Insets insets = ((EmptyBorder) original).getBorderInsets();
+            return new BorderUIResource.EmptyBorderUIResource(
+                    Math.round(scale * insets.top),
+                    Math.round(scale * insets.left),
+                    Math.round(scale * insets.bottom),
+                    Math.round(scale * insets.right));
+        }
+        return new ScaledBorderUIResource(original, scale);
+    }
+
+    private static boolean includesMargin(Border border) {
+        for (Class<?> c : MARGIN_BORDERS) {
+            if (c.isInstance(border)) {
+                return true;
+            }
+        }
+        for (Class<?> c = border.getClass(); c != null; c = c.getSuperclass()) {
+            if (MARGIN_BORDER_CLASS_NAMES.contains(c.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static boolean endsWithOneOf(String text, String[] suffixes) {
         for (String suffix : suffixes) {
             if (text.endsWith(suffix)) {
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.plaf;
+
+import javax.swing.UIDefaults;
+
+import com.github.swingdpi.util.LoopBreakingScaledIcon;
+
+/**
+ * Installs a {@link LoopBreakingScaledIcon} in the UIDefaults, as the active value it must be,
+ * so that the delegate finds itself while the icon is calling it.
+ */
+class LoopBreakingIconUIResource extends ScaledIconUIResource implements UIDefaults.ActiveValue {
+    private final LoopBreakingScaledIcon icon;
+
+    public LoopBreakingIconUIResource(LoopBreakingScaledIcon icon) {
+        super(icon);
+        this.icon = icon;
+    }
+
+    @Override
+    public Object createValue(UIDefaults table) {
+        Object value = icon.createValue(table);
+        return (value == icon) ? this : value;
+    }
+}
@@ -20,9 +20,15 @@
 
 package com.github.swingdpi.plaf;
 
+import javax.swing.UIDefaults;
+
 public class MetalTweaker extends BasicTweaker {
 
     public MetalTweaker(float scaleFactor) {
         super(scaleFactor);
     }
+
+    public MetalTweaker(float scaleFactor, UIDefaults uiDefaults) {
+        super(scaleFactor, uiDefaults);
+    }
 }
@@ -21,16 +21,64 @@
 package com.github.swingdpi.plaf;
 
 import java.awt.Font;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.Icon;
+import javax.swing.UIDefaults;
+import javax.swing.border.Border;
 import javax.swing.plaf.FontUIResource;
 
+import com.github.swingdpi.DpiUtils;
+
 public class NimbusTweaker extends BasicTweaker {
 
+    /**
+     * Nimbus' icons which just run a painter, as: UIDefaults key, style prefix, painter key.
+     * (Not "ToolBar.handleIcon", which Synth sizes to fit the tool bar.)
+     */
+    private static final String[][] PAINTER_ICONS = {
+        { "RadioButton.icon", "RadioButton", "iconPainter" },
+        { "CheckBox.icon", "CheckBox", "iconPainter" },
+        { "RadioButtonMenuItem.checkIcon", "RadioButtonMenuItem", "checkIconPainter" },
+        { "CheckBoxMenuItem.checkIcon", "CheckBoxMenuItem", "checkIconPainter" },
+        { "Menu.arrowIcon", "Menu", "arrowIconPainter" },
+        { "Tree.leafIcon", "Tree", "leafIconPainter" },
+        { "Tree.closedIcon", "Tree", "closedIconPainter" },
+        { "Tree.openIcon", "Tree", "openIconPainter" },
+        { "Tree.collapsedIcon", "Tree", "collapsedIconPainter" },
+        { "Tree.expandedIcon", "Tree", "expandedIconPainter" },
+        { "Table.ascendingSortIcon", "TableHeader", "ascendingSortIconPainter" },
+        { "Table.descendingSortIcon", "TableHeader", "descendingSortIconPainter" },
+        { "OptionPane.errorIcon", "OptionPane", "errorIconPainter" },
+        { "OptionPane.informationIcon", "OptionPane", "informationIconPainter" },
+        { "OptionPane.questionIcon", "OptionPane", "questionIconPainter" },
+        { "OptionPane.warningIcon", "OptionPane", "warningIconPainter" },
+        { "FileChooser.fileIcon", "FileChooser", "fileIconPainter" },
+        { "FileChooser.directoryIcon", "FileChooser", "directoryIconPainter" },
+        { "FileChooser.upFolderIcon", "FileChooser", "upFolderIconPainter" },
+        { "FileChooser.newFolderIcon", "FileChooser", "newFolderIconPainter" },
+        { "FileChooser.hardDriveIcon", "FileChooser", "hardDriveIconPainter" },
+        { "FileChooser.floppyDriveIcon", "FileChooser", "floppyDriveIconPainter" },
+        { "FileChooser.homeFolderIcon", "FileChooser", "homeFolderIconPainter" },
+        { "FileChooser.detailsViewIcon", "FileChooser", "detailsViewIconPainter" },
+        { "FileChooser.listViewIcon", "FileChooser", "listViewIconPainter" },
+        {
+            "InternalFrame:InternalFrameTitlePane:\"InternalFrameTitlePane.menuButton\".icon",
+            "InternalFrame:InternalFrameTitlePane:\"InternalFrameTitlePane.menuButton\"",
+            "iconPainter"
+        },
+    };
+
     public NimbusTweaker(float scaleFactor) {
         super(scaleFactor);
     }
 
+    public NimbusTweaker(float scaleFactor, UIDefaults uiDefaults) {
+        super(scaleFactor, uiDefaults);
+    }
+
     @Override
     public void initialTweaks() {
 
@@ -52,15 +100,76 @@ public class NimbusTweaker extends BasicTweaker {
     }
 
     /**
-     * Scaling Radio or CheckBox button icons leads to really weird artifacts in Nimbus. Their
-     * selection state is generally not rendered. We therefore disable all scaling.
+     * Nimbus paints most of its icons with painters, which can be run at the scaled size. (Note
+     * that wrapping these in a {@code ScaledIcon} would lose the selection state of radio buttons
+     * and check boxes, since that is only rendered when Synth paints the icon itself.)
      */
     @Override
     public Icon modifyIcon(Object key, Icon original) {
+        if (isUnscaled(scaleFactor) || DpiUtils.isPerMonitorDpiActive() ||
+                "ToolBar.handleIcon".equals(key)) {
+            return original;
+        }
+        String[] painted = findPainterIcon(key);
+        if (painted != null && original.getClass().getSimpleName().equals("NimbusIcon")) {
+            return new ScaledNimbusIcon(original, painted[1], painted[2], scaleFactor);
+        }
+        return super.modifyIcon(key, original);
+    }
 
-        // TODO: disable more selectively?
-        // Scaling seems problematic - scaled icons are not reset in the UIDefaults?
-        // (Perhaps something to do with UI multiplexing & not overriding the correct data table??)
+    /**
+     * Nimbus borders are painted by the (scaled) painters, and take their insets from the
+     * content margins, which are scaled like other insets.
+     */
+    @Override
+    public Border modifyBorder(Object key, Border original) {
         return original;
     }
+
+    /**
+     * Wraps the painters, which draw almost everything in Nimbus, so that their geometry is scaled
+     * to suit the scaled fonts and metrics, and their output is cached.
+     */
+    @Override
+    public void finalTweaks() {
+        super.finalTweaks();
+
+        if (isUnscaled(scaleFactor)) {
+            return;
+        }
+        List<Object> wrapped = new ArrayList<Object>();
+        for (Map.Entry<Object, Object> entry : uiDefaults.entrySet()) {
+            Object key = entry.getKey();
+            if (key instanceof String && ((String) key).endsWith("Painter")) {
+                Object value = ScaledPainter.wrap(entry.getValue(), getGeometryScale((String) key));
+                if (value != entry.getValue()) {
+                    wrapped.add(key);
+                    wrapped.add(value);
+                }
+            }
+        }
+        uiDefaults.putDefaults(wrapped.toArray());
+    }
+
+    /**
+     * Icon painters are not scaled: the icons we replace run them with a scaled graphics, and
+     * otherwise the icons are unscaled.
+     */
+    private float getGeometryScale(String painterKey) {
+        for (String[] painted : PAINTER_ICONS) {
+            if (painterKey.startsWith(painted[1] + "[") && painterKey.endsWith("]." + painted[2])) {
+                return 1f;
+            }
+        }
+        return scaleFactor;
+    }
+
+    private static String[] findPainterIcon(Object key) {
+        for (String[] painted : PAINTER_ICONS) {
+            if (painted[0].equals(key)) {
+                return painted;
+            }
+        }
+        return null;
+    }
 }
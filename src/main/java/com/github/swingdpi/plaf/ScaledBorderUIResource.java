@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.plaf;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+
+import javax.swing.border.AbstractBorder;
+import javax.swing.border.Border;
+import javax.swing.plaf.UIResource;
+
+/**
+ * Scales a border from the UI defaults: its insets are scaled, and it is painted through a scaled
+ * {@code Graphics2D} so that its strokes are drawn at the scaled width.
+ * <p>
+ * Layout asks for a component's insets very often, via {@link #getBorderInsets(Component, Insets)}
+ * (which {@code JComponent#getInsets(Insets)} prefers for an {@code AbstractBorder}). That fills
+ * the caller's object from the last scaled result, which is only recomputed if the delegate's
+ * insets change, so it doesn't allocate (at least, not when the delegate doesn't either).
+ */
+class ScaledBorderUIResource extends AbstractBorder implements UIResource {
+
+    private final Border delegate;
+    private final float scaleFactor;
+
+    /** Whether the delegate implements the non-allocating form of {@code getBorderInsets}. */
+    private final boolean fillsInsets;
+
+    /** The last result, which may be read and replaced by any thread. */
+    private volatile ScaledInsets last = new ScaledInsets(new Insets(0, 0, 0, 0), 1f);
+
+    ScaledBorderUIResource(Border delegate, float scaleFactor) {
+        this.delegate = delegate;
+        this.scaleFactor = scaleFactor;
+        this.fillsInsets = overridesFillingInsets(delegate);
+    }
+
+    /**
+     * Some older borders extend AbstractBorder but only override the allocating form of
+     * {@code getBorderInsets}, in which case the other form would give the wrong result.
+     */
+    private static boolean overridesFillingInsets(Border border) {
+        if (!(border instanceof AbstractBorder)) {
+            return false;
+        }
+        try {
+            return border.getClass().getMethod("getBorderInsets", Component.class, Insets.class)
+                    .getDeclaringClass() != AbstractBorder.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Insets getBorderInsets(Component c, Insets insets) {
+        Insets unscaled;
+        if (fillsInsets) {
+            unscaled = ((AbstractBorder) delegate).getBorderInsets(c, insets);
+        } else {
+            unscaled = delegate.getBorderInsets(c);
+        }
+        ScaledInsets scaled = last;
+        if (!scaled.isFor(unscaled)) {
+            scaled = new ScaledInsets(unscaled, scaleFactor);
+            last = scaled;
+        }
+        insets.set(scaled.top, scaled.left, scaled.bottom, scaled.right);
+        return insets;
+    }
+
+    @Override
+    public boolean isBorderOpaque() {
+        return delegate.isBorderOpaque();
+    }
+
+    @Override
+    public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
+        if (!(g instanceof Graphics2D)) {
+            delegate.paintBorder(c, g, x, y, width, height);
+            return;
+        }
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.translate(x, y);
+            g2.scale(scaleFactor, scaleFactor);
+
+            // Round up, so that the far edges reach (rather than fall short of) the last pixels
+            delegate.paintBorder(c, g2, 0, 0,
+                    (int) Math.ceil(width / scaleFactor), (int) Math.ceil(height / scaleFactor));
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    Border getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Scaled insets, with the unscaled values they were computed from.
+     */
+    private static final class ScaledInsets {
+        final int unscaledTop;
+        final int unscaledLeft;
+        final int unscaledBottom;
+        final int unscaledRight;
+        final int top;
+        final int left;
+        final int bottom;
+        final int right;
+
+        ScaledInsets(Insets unscaled, float scaleFactor) {
+            unscaledTop = unscaled.top;
+            unscaledLeft = unscaled.left;
+            unscaledBottom = unscaled.bottom;
+            unscaledRight = unscaled.right;
+            top = Math.round(unscaled.top * scaleFactor);
+            left = Math.round(unscaled.left * scaleFactor);
+            bottom = Math.round(unscaled.bottom * scaleFactor);
+            right = Math.round(unscaled.right * scaleFactor);
+        }
+
+        boolean isFor(Insets unscaled) {
+            return unscaled.top == unscaledTop && unscaled.left == unscaledLeft &&
+                    unscaled.bottom == unscaledBottom && unscaled.right == unscaledRight;
+        }
+    }
+}
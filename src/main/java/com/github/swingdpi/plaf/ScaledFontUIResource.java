@@ -21,19 +21,54 @@
 package com.github.swingdpi.plaf;
 
 import java.awt.Font;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.swing.plaf.FontUIResource;
 
 /**
- * Purely a 'tagging class' - so we can detect instances of this to validate that we never
- * scale an font twice.
+ * A 'tagging class' - so we can detect instances of this to validate that we never scale an font
+ * twice. Live instances are also counted, to monitor the library's memory use.
  */
 public class ScaledFontUIResource extends FontUIResource {
+
+    private static final ReferenceQueue<ScaledFontUIResource> s_collected =
+            new ReferenceQueue<ScaledFontUIResource>();
+
+    /** Weak references to each instance, until collected. (Fonts can't be compared by identity.) */
+    private static final Set<Reference<?>> s_instances =
+            Collections.synchronizedSet(new HashSet<Reference<?>>());
+
     public ScaledFontUIResource(String name, int style, int newSize) {
         super(name, style, newSize);
+        track(this);
     }
 
     public ScaledFontUIResource(Font font) {
         super(font);
+        track(this);
+    }
+
+    private static void track(ScaledFontUIResource font) {
+        expungeCollected();
+        s_instances.add(new WeakReference<ScaledFontUIResource>(font, s_collected));
+    }
+
+    private static void expungeCollected() {
+        for (Reference<?> ref = s_collected.poll(); ref != null; ref = s_collected.poll()) {
+            s_instances.remove(ref);
+        }
+    }
+
+    /**
+     * @return the number of instances which have not (yet) been garbage collected.
+     */
+    public static int getLiveInstanceCount() {
+        expungeCollected();
+        return s_instances.size();
     }
 }
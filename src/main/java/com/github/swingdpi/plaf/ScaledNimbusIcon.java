@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.plaf;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+
+import javax.swing.AbstractButton;
+import javax.swing.Icon;
+import javax.swing.JComponent;
+import javax.swing.JMenu;
+import javax.swing.JTree;
+import javax.swing.Painter;
+import javax.swing.UIManager;
+import javax.swing.plaf.ComponentUI;
+import javax.swing.plaf.UIResource;
+import javax.swing.plaf.synth.SynthContext;
+import javax.swing.plaf.synth.SynthUI;
+
+/**
+ * Replaces one of Nimbus' icons, each of which just runs a painter from the UIDefaults, so that
+ * the painter is run at the scaled size (which keeps it sharp, unlike {@code ScaledIcon}).
+ * <p>
+ * Nimbus' own icons only pick the painter for the component's current state when called via
+ * Synth, which no longer happens once they are replaced. Hence this looks the state up itself;
+ * otherwise for example check boxes would never be painted as selected.
+ */
+final class ScaledNimbusIcon implements Icon, UIResource {
+
+    private final String prefix;
+    private final String painterKey;
+    private final int unscaledWidth;
+    private final int unscaledHeight;
+    private final int width;
+    private final int height;
+
+    /**
+     * @param prefix the Nimbus style prefix of the painter, such as "CheckBox"
+     * @param painterKey the key of the painter within that style, such as "iconPainter"
+     */
+    ScaledNimbusIcon(Icon original, String prefix, String painterKey, float scaleFactor) {
+        this.prefix = prefix;
+        this.painterKey = painterKey;
+        this.unscaledWidth = original.getIconWidth();
+        this.unscaledHeight = original.getIconHeight();
+        this.width = Math.round(unscaledWidth * scaleFactor);
+        this.height = Math.round(unscaledHeight * scaleFactor);
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+        Painter<Object> painter = findPainter(c);
+        if (painter == null || unscaledWidth <= 0 || unscaledHeight <= 0) {
+            return;
+        }
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.translate(x, y);
+            if (c instanceof JMenu && !c.getComponentOrientation().isLeftToRight()) {
+                g2.translate(width, 0);
+                g2.scale(-1, 1);
+            }
+            g2.scale(width / (double) unscaledWidth, height / (double) unscaledHeight);
+            painter.paint(g2, (c instanceof JComponent) ? c : null, unscaledWidth, unscaledHeight);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * @return the painter for the component's current state, or failing that for its enabled
+     *         state, as Nimbus' own icons do when painted outside of Synth.
+     */
+    @SuppressWarnings("unchecked")
+    private Painter<Object> findPainter(Component c) {
+        ComponentUI ui = null;
+        if (c instanceof AbstractButton) {
+            ui = ((AbstractButton) c).getUI();
+        } else if (c instanceof JTree) {
+            ui = ((JTree) c).getUI();
+        }
+        if (ui instanceof SynthUI) {
+            SynthContext context = ((SynthUI) ui).getContext((JComponent) c);
+            Object painter = context.getStyle().get(context, painterKey);
+            if (painter instanceof Painter) {
+                return (Painter<Object>) painter;
+            }
+        }
+        Object painter = UIManager.get(prefix + "[Enabled]." + painterKey);
+        return (painter instanceof Painter) ? (Painter<Object>) painter : null;
+    }
+
+    @Override
+    public int getIconWidth() {
+        return width;
+    }
+
+    @Override
+    public int getIconHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.plaf;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.PrintGraphics;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.print.PrinterGraphics;
+import java.awt.print.PrinterJob;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.Painter;
+import javax.swing.UIDefaults;
+
+import com.github.swingdpi.util.DelegatingGraphics2D;
+
+/**
+ * Wraps one of Nimbus' {@link Painter}s so that the geometry it paints (corner radii, border
+ * widths, gradient stops...) is enlarged by the scale factor, rather than the unscaled design
+ * being stretched over a larger component.
+ * <p>
+ * Nimbus installs a separate painter for each state of each region, so the output is cached per
+ * painter: as a raster at the device size, keyed by that size and the component's colours. While
+ * a component keeps its size, repaints are then a single image blit rather than re-running the
+ * painter's vector paths.
+ */
+final class ScaledPainter implements Painter<Object> {
+
+    /** Larger areas (e.g. the background of a text area) are painted directly rather than cached. */
+    private static final int MAX_CACHED_PIXELS = 256 * 256;
+
+    /** Per painter, i.e. per state. Enough for several differently-sized components to share. */
+    private static final int MAX_CACHED_IMAGES = 4;
+
+    /** Transforms which map the painted area onto whole device pixels, so can blit a raster. */
+    private static final int BLITTABLE_TRANSFORMS = AffineTransform.TYPE_TRANSLATION |
+            AffineTransform.TYPE_UNIFORM_SCALE | AffineTransform.TYPE_GENERAL_SCALE;
+
+    private final Painter<Object> delegate;
+    private final float geometryScale;
+
+    @SuppressWarnings("serial")
+    private final Map<CacheKey, SoftReference<BufferedImage>> cache =
+            new LinkedHashMap<CacheKey, SoftReference<BufferedImage>>(8, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<CacheKey, SoftReference<BufferedImage>> eldest) {
+                    return size() > MAX_CACHED_IMAGES;
+                }
+            };
+
+    /**
+     * @param geometryScale the factor to enlarge the painted geometry by. Painters of icons use
+     *        1, since the icons scale the graphics they paint with instead.
+     */
+    private ScaledPainter(Painter<Object> delegate, float geometryScale) {
+        this.delegate = delegate;
+        this.geometryScale = geometryScale;
+    }
+
+    /**
+     * @param value a value of a UIDefaults painter entry: either a painter or a lazy value which
+     *        creates one.
+     * @return a wrapped value, or {@code value} if it is not a painter or is already wrapped.
+     */
+    @SuppressWarnings("unchecked")
+    static Object wrap(Object value, float geometryScale) {
+        if (value instanceof ScaledPainter || value instanceof LazyScaledPainter) {
+            return value;
+        }
+        if (value instanceof Painter) {
+            return new ScaledPainter((Painter<Object>) value, geometryScale);
+        }
+        if (value instanceof UIDefaults.LazyValue) {
+            return new LazyScaledPainter((UIDefaults.LazyValue) value, geometryScale);
+        }
+        return value;
+    }
+
+    @Override
+    public void paint(Graphics2D g, Object object, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int w = Math.max(1, Math.round(width / geometryScale));
+        int h = Math.max(1, Math.round(height / geometryScale));
+
+        AffineTransform at = g.getTransform();
+        if ((at.getType() & ~BLITTABLE_TRANSFORMS) == 0 && !isPrinting(g)) {
+            int x0 = (int) Math.round(at.getTranslateX());
+            int y0 = (int) Math.round(at.getTranslateY());
+            int deviceWidth = (int) Math.round(at.getTranslateX() + width * at.getScaleX()) - x0;
+            int deviceHeight = (int) Math.round(at.getTranslateY() + height * at.getScaleY()) - y0;
+
+            if (deviceWidth > 0 && deviceHeight > 0 &&
+                    (long) deviceWidth * deviceHeight <= MAX_CACHED_PIXELS) {
+                BufferedImage image = getImage(object, w, h, deviceWidth, deviceHeight);
+                Graphics2D g2 = (Graphics2D) g.create();
+                try {
+                    g2.setTransform(AffineTransform.getTranslateInstance(x0, y0));
+                    g2.drawImage(image, 0, 0, null);
+                } finally {
+                    g2.dispose();
+                }
+                return;
+            }
+        }
+        paintVectors(g, object, w, h, width / (double) w, height / (double) h);
+    }
+
+    private BufferedImage getImage(
+            Object object, int w, int h, int deviceWidth, int deviceHeight) {
+        CacheKey key = new CacheKey(deviceWidth, deviceHeight, object);
+        synchronized (cache) {
+            SoftReference<BufferedImage> ref = cache.get(key);
+            BufferedImage image = (ref == null) ? null : ref.get();
+            if (image != null) {
+                return image;
+            }
+        }
+
+        BufferedImage image = new BufferedImage(
+                deviceWidth, deviceHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            paintVectors(g, object, w, h, deviceWidth / (double) w, deviceHeight / (double) h);
+        } finally {
+            g.dispose();
+        }
+
+        synchronized (cache) {
+            cache.put(key, new SoftReference<BufferedImage>(image));
+        }
+        return image;
+    }
+
+    private void paintVectors(
+            Graphics2D g, Object object, int w, int h, double scaleX, double scaleY) {
+        Graphics2D g2 = new VectorGraphics((Graphics2D) g.create());
+        try {
+            g2.scale(scaleX, scaleY);
+            delegate.paint(g2, object, w, h);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private static boolean isPrinting(Graphics g) {
+        return g instanceof PrinterGraphics || g instanceof PrintGraphics;
+    }
+
+    /**
+     * Nimbus painters normally cache their output at the size they are asked to paint, which is
+     * then stretched by any scaling transform and so comes out blurred. They skip that cache when
+     * printing, so this graphics identifies itself as a printer's.
+     */
+    private static final class VectorGraphics extends DelegatingGraphics2D
+            implements PrinterGraphics {
+
+        VectorGraphics(Graphics2D delegate) {
+            super(delegate);
+        }
+
+        @Override
+        protected Graphics2D wrap(Graphics2D g) {
+            return new VectorGraphics(g);
+        }
+
+        @Override
+        public PrinterJob getPrinterJob() {
+            return null;
+        }
+    }
+
+    /**
+     * Identifies a rendering. Nimbus painters only vary with their state and size, besides the
+     * colours of the component they are painting.
+     */
+    private static final class CacheKey {
+        private final int width;
+        private final int height;
+        private final int background;
+        private final int foreground;
+
+        CacheKey(int width, int height, Object object) {
+            this.width = width;
+            this.height = height;
+            Component c = (object instanceof Component) ? (Component) object : null;
+            this.background = (c == null) ? 0 : rgb(c.getBackground());
+            this.foreground = (c == null) ? 0 : rgb(c.getForeground());
+        }
+
+        private static int rgb(Color color) {
+            return (color == null) ? 0 : color.getRGB();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return width == other.width && height == other.height &&
+                    background == other.background && foreground == other.foreground;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((width * 31 + height) * 31 + background) * 31 + foreground;
+        }
+    }
+
+    /**
+     * Wraps the painter created by a lazy value (as Nimbus installs most of its painters).
+     */
+    private static final class LazyScaledPainter implements UIDefaults.LazyValue {
+        private final UIDefaults.LazyValue delegate;
+        private final float geometryScale;
+
+        LazyScaledPainter(UIDefaults.LazyValue delegate, float geometryScale) {
+            this.delegate = delegate;
+            this.geometryScale = geometryScale;
+        }
+
+        @Override
+        public Object createValue(UIDefaults table) {
+            Object value = delegate.createValue(table);
+            return (value instanceof Painter) ? wrap(value, geometryScale) : value;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.awt.Font;
 import java.awt.Insets;
 
 import javax.swing.Icon;
+import javax.swing.border.Border;
 
 /**
  * A tweaking delegate class which should be created with a short lifetime - to apply one round
@@ -44,5 +45,13 @@ public interface Tweaker {
 
     Insets modifyInsets(Object key, Insets original);
 
+    /**
+     * By default borders are left unchanged, so that implementations written before borders
+     * were tweaked keep working.
+     */
+    default Border modifyBorder(Object key, Border original) {
+        return original;
+    }
+
     void finalTweaks();
 }
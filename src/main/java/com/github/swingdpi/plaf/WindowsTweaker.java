@@ -24,11 +24,14 @@ import java.awt.Font;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
+import javax.swing.UIDefaults;
+import javax.swing.UIManager;
 import javax.swing.plaf.InsetsUIResource;
 import javax.swing.plaf.UIResource;
 
 import com.github.swingdpi.DpiUtils;
 import com.github.swingdpi.util.LoopBreakingScaledIcon;
+import com.github.swingdpi.util.RescalableIcon;
 
 public class WindowsTweaker extends BasicTweaker {
 
@@ -70,10 +73,14 @@ public class WindowsTweaker extends BasicTweaker {
     private static final String BUTTON_DASHED_RECT_PREFIX = "Button.dashedRectGap";
 
     public WindowsTweaker(float scaleFactor, boolean classic) {
+        this(scaleFactor, classic, UIManager.getLookAndFeelDefaults());
+    }
+
+    public WindowsTweaker(float scaleFactor, boolean classic, UIDefaults uiDefaults) {
 
         // Windows already scales fonts, scrollbar sizes (etc) according to the system DPI settings.
         // (the same things which hopefully the heuristics in BasicTweaker manages to locate).
-        super(scaleFactor);
+        super(scaleFactor, uiDefaults);
         alternateScaleFactor = DpiUtils.isPerMonitorDpiActive()
                 ? 100f * scaleFactor / DpiUtils.getSystemScaling()
                 : scaleFactor;
@@ -160,7 +167,8 @@ public class WindowsTweaker extends BasicTweaker {
     public Icon modifyIcon(Object key, Icon original) {
 
         // When per-monitor DPI scaling is active, just stay out of Java's way with icons.
-        if (DpiUtils.isPerMonitorDpiActive()) {
+        // Rescalable icons are defined at 100%, so never include Windows' own scaling.
+        if (DpiUtils.isPerMonitorDpiActive() || original instanceof RescalableIcon) {
             return super.modifyIcon(key, original);
         }
 
@@ -224,6 +232,6 @@ public class WindowsTweaker extends BasicTweaker {
         if (isUnscaled(scale) && original instanceof UIResource) {
             return original;
         }
-        return new ScaledIconUIResource(new LoopBreakingScaledIcon(key, original, scale));
+        return new LoopBreakingIconUIResource(new LoopBreakingScaledIcon(key, original, scale));
     }
 }
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.Icon;
+
+import com.github.swingdpi.UiScaling;
+
+/**
+ * An optional shared store for the rasters cached by small {@link ScaledIcon}s (which are mostly
+ * those created for the UI defaults). Rather than each icon keeping its own tiny image, the
+ * rasters are packed into a few large pages and each icon paints as a sub-rectangle blit. This
+ * saves the overhead of each image (its surface data and acceleration bookkeeping) and improves
+ * locality when, say, a toolbar paints many icons. Identical rasters are stored once.
+ * <p>
+ * The atlas is emptied whenever the global scaling changes, since its contents are then mostly
+ * obsolete; icons still in use simply re-add their raster when next painted.
+ * <p>
+ * The atlas itself only holds its pages weakly: each page is kept by the icons' (soft) caches
+ * of the rasters stored in it, so it is released once none of those are in use, just as the
+ * icons' own rasters would be. {@link ScaledIcon#trimCaches()} also removes released pages.
+ */
+public final class IconAtlas {
+    private IconAtlas() {}
+
+    /** The largest width or height of icon to store. Larger ones gain little from sharing. */
+    public static final int MAX_ICON_SIZE = 64;
+
+    private static final int PAGE_SIZE = 512;
+
+    /** Transparent space around each raster, so filtering while painting can't bleed between. */
+    private static final int GUTTER = 1;
+
+    private static volatile boolean s_enabled = false;
+
+    /**
+     * Threading: all access to the following must synchronize on this final member
+     */
+    private static final Object s_lock = new Object();
+    private static final List<WeakReference<Page>> s_pages = new ArrayList<WeakReference<Page>>();
+    private static final Map<Integer, List<WeakReference<Region>>> s_regionsByContentHash =
+            new HashMap<Integer, List<WeakReference<Region>>>();
+    private static int s_scalingEpoch = -1;
+
+    public static boolean isEnabled() {
+        return s_enabled;
+    }
+
+    /**
+     * Enables or disables atlas mode. Icons which have already cached a raster keep it until
+     * their caches are cleared, e.g. by {@link ScaledIcon#clearCaches()}.
+     */
+    public static void setEnabled(boolean enabled) {
+        s_enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * Empties the atlas. Icons which used it will re-render their rasters when next painted.
+     */
+    public static void clear() {
+        synchronized (s_lock) {
+            for (WeakReference<Page> ref : s_pages) {
+                Page page = ref.get();
+                if (page != null) {
+                    page.image = null;
+                }
+            }
+            s_pages.clear();
+            s_regionsByContentHash.clear();
+        }
+    }
+
+    /**
+     * Forgets the pages and rasters which are no longer used by any icon.
+     */
+    static void trim() {
+        synchronized (s_lock) {
+            for (Iterator<WeakReference<Page>> i = s_pages.iterator(); i.hasNext();) {
+                if (i.next().get() == null) {
+                    i.remove();
+                }
+            }
+            for (Iterator<List<WeakReference<Region>>> i =
+                    s_regionsByContentHash.values().iterator(); i.hasNext();) {
+                List<WeakReference<Region>> sameHash = i.next();
+                for (Iterator<WeakReference<Region>> j = sameHash.iterator(); j.hasNext();) {
+                    if (j.next().get() == null) {
+                        j.remove();
+                    }
+                }
+                if (sameHash.isEmpty()) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    /** @return the number of pages in use. */
+    public static int getPageCount() {
+        synchronized (s_lock) {
+            trim();
+            return s_pages.size();
+        }
+    }
+
+    /** @return the number of distinct rasters stored and in use. */
+    public static int getRegionCount() {
+        synchronized (s_lock) {
+            trim();
+            int count = 0;
+            for (List<WeakReference<Region>> sameHash : s_regionsByContentHash.values()) {
+                count += sameHash.size();
+            }
+            return count;
+        }
+    }
+
+    public static long getBytes() {
+        return 4L * PAGE_SIZE * PAGE_SIZE * getPageCount();
+    }
+
+    static boolean accepts(int width, int height) {
+        return s_enabled && width > 0 && height > 0 &&
+                width <= MAX_ICON_SIZE && height <= MAX_ICON_SIZE;
+    }
+
+    /**
+     * Copies a raster into the atlas, unless an identical one is already stored.
+     *
+     * @return an icon painting the stored raster.
+     */
+    static Region add(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        int hash = (width * 31 + height) * 31 + Arrays.hashCode(pixels);
+
+        synchronized (s_lock) {
+            if (s_scalingEpoch != UiScaling.getEpoch()) {
+                clear();
+                s_scalingEpoch = UiScaling.getEpoch();
+            }
+
+            List<WeakReference<Region>> sameHash = s_regionsByContentHash.get(hash);
+            if (sameHash == null) {
+                sameHash = new ArrayList<WeakReference<Region>>(1);
+                s_regionsByContentHash.put(hash, sameHash);
+            }
+            for (WeakReference<Region> ref : sameHash) {
+                Region region = ref.get();
+                if (region != null && region.hasPixels(width, height, pixels)) {
+                    return region;
+                }
+            }
+
+            Region region = allocate(width, height);
+            region.page.image.setRGB(region.x, region.y, width, height, pixels, 0, width);
+            sameHash.add(new WeakReference<Region>(region));
+            return region;
+        }
+    }
+
+    private static Region allocate(int width, int height) {
+        for (WeakReference<Page> ref : s_pages) {
+            Page page = ref.get();
+            Region region = (page == null) ? null : page.allocate(width, height);
+            if (region != null) {
+                return region;
+            }
+        }
+        Page page = new Page();
+        s_pages.add(new WeakReference<Page>(page));
+        return page.allocate(width, height);
+    }
+
+    /**
+     * A page of the atlas, filled by "shelf" packing: rasters are placed left to right in rows
+     * (shelves), each as tall as the first raster placed in it.
+     */
+    private static final class Page {
+
+        /** Set to null when the atlas is cleared, so that the memory can be reclaimed. */
+        volatile BufferedImage image =
+                new BufferedImage(PAGE_SIZE, PAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+
+        private final List<Shelf> shelves = new ArrayList<Shelf>();
+        private int nextShelfY = 0;
+
+        Region allocate(int width, int height) {
+            int paddedWidth = width + GUTTER;
+            int paddedHeight = height + GUTTER;
+
+            // Use the lowest shelf which fits, unless it would waste over half its height
+            Shelf best = null;
+            for (Shelf shelf : shelves) {
+                if (shelf.height >= paddedHeight && shelf.nextX + paddedWidth <= PAGE_SIZE &&
+                        (best == null || shelf.height < best.height)) {
+                    best = shelf;
+                }
+            }
+            boolean roomForShelf = nextShelfY + paddedHeight <= PAGE_SIZE;
+            if (best == null || (best.height > 2 * paddedHeight && roomForShelf)) {
+                if (!roomForShelf) {
+                    return null;
+                }
+                best = new Shelf(nextShelfY, paddedHeight);
+                shelves.add(best);
+                nextShelfY += paddedHeight;
+            }
+            Region region = new Region(this, best.nextX, best.y, width, height);
+            best.nextX += paddedWidth;
+            return region;
+        }
+    }
+
+    private static final class Shelf {
+        final int y;
+        final int height;
+        int nextX = 0;
+
+        Shelf(int y, int height) {
+            this.y = y;
+            this.height = height;
+        }
+    }
+
+    /**
+     * A raster stored in the atlas, which paints as a blit from its page.
+     */
+    static final class Region implements Icon {
+        final Page page;
+        final int x;
+        final int y;
+        private final int width;
+        private final int height;
+
+        Region(Page page, int x, int y, int width, int height) {
+            this.page = page;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @return false once the atlas has been cleared, after which this paints nothing.
+         */
+        boolean isValid() {
+            return page.image != null;
+        }
+
+        boolean hasPixels(int w, int h, int[] pixels) {
+            BufferedImage image = page.image;
+            return w == width && h == height && image != null &&
+                    Arrays.equals(pixels, image.getRGB(x, y, width, height, null, 0, width));
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int dx, int dy) {
+            BufferedImage image = page.image;
+            if (image != null) {
+                g.drawImage(image, dx, dy, dx + width, dy + height,
+                        x, y, x + width, y + height, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return height;
+        }
+    }
+}
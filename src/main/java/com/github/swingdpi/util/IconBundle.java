@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+
+import com.github.swingdpi.UiScaling;
+
+/**
+ * Icons pre-rendered at a set of scalings by {@link IconBundleBuilder}, all packed into a single
+ * file. A bundle file is memory-mapped (or else read into a direct buffer) and each icon's pixels
+ * are read straight from a slice of it, so only the icons (and scalings) actually used are ever
+ * decoded, or (from a mapped file) paged in. Icons requested at a
+ * scaling which was not pre-rendered are scaled at runtime, from the 100% icon, by the shared
+ * {@link ScaledIcon#intern(Icon, float) ScaledIcon instances}.
+ * <p>
+ * Threading: bundles may be used from any thread.
+ */
+public final class IconBundle {
+
+    static final int MAGIC = 0x53444942; // "SDIB"
+    static final int VERSION = 1;
+
+    private final ByteBuffer buffer;
+    private final int[] scalings;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Threading: all access must synchronize on this final member
+     */
+    private final Map<String, SoftReference<Icon>> icons =
+            new HashMap<String, SoftReference<Icon>>();
+
+    private IconBundle(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        ByteBuffer in = buffer.duplicate();
+        try {
+            if (in.remaining() < 8 || in.getInt() != MAGIC) {
+                throw new IOException("Not an icon bundle");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported icon bundle version: " + version);
+            }
+            scalings = new int[checkCount(in.getInt(), in.remaining() / 4)];
+            for (int i = 0; i < scalings.length; i++) {
+                scalings[i] = in.getInt();
+            }
+            if (indexOf(100) < 0) {
+                throw new IOException("Corrupt icon bundle: no 100% icons");
+            }
+            int count = checkCount(in.getInt(), in.remaining() / 2);
+            Map<String, Entry> map = new LinkedHashMap<String, Entry>(count * 2);
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(readString(in), scalings.length);
+                for (int s = 0; s < scalings.length; s++) {
+                    entry.widths[s] = in.getInt();
+                    entry.heights[s] = in.getInt();
+                    entry.offsets[s] = in.getInt();
+                    checkPixels(entry, s, buffer.limit());
+                }
+                map.put(entry.name, entry);
+            }
+            entries = Collections.unmodifiableMap(map);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt icon bundle: truncated index", e);
+        }
+    }
+
+    private static int checkCount(int count, int max) throws IOException {
+        if (count < 0 || count > max) {
+            throw new IOException("Corrupt icon bundle: count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Checks that an icon's pixels lie within the bundle, so that reading them can not fail.
+     */
+    private static void checkPixels(Entry entry, int index, int limit) throws IOException {
+        long width = entry.widths[index];
+        long height = entry.heights[index];
+        long offset = entry.offsets[index];
+        if (width < 0 || height < 0 || offset < 0 || offset + width * height * 4 > limit) {
+            throw new IOException("Corrupt icon bundle: " + entry.name + " is " + width + "x" +
+                    height + " at " + offset + ", in " + limit + " bytes");
+        }
+    }
+
+    /**
+     * Maps a bundle file into memory. The mapping lasts as long as the bundle is reachable.
+     */
+    public static IconBundle open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new IconBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Opens a bundle from a resource, e.g. one packaged in the application's jar. A plain file
+     * is mapped, as by {@link #open}. Other resources can't be mapped, so are read into a single
+     * direct buffer, i.e. outside of the heap.
+     */
+    public static IconBundle load(URL resource) throws IOException {
+        File file = toFile(resource);
+        if (file != null) {
+            return open(file);
+        }
+        URLConnection connection = resource.openConnection();
+        InputStream in = connection.getInputStream();
+        try {
+            return new IconBundle(readFully(in, connection.getContentLengthLong()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * As {@link #load(URL)}, except that a resource which is not a plain file is extracted to a
+     * new file in the given directory, which is then mapped. The file is deleted once mapped, or
+     * (on platforms which can't delete a mapped file, such as Windows) when the JVM exits.
+     * <p>
+     * This reads the resource just as {@code load} does, but keeps the pixels of unused icons
+     * out of memory. The directory should be private to the application.
+     */
+    public static IconBundle load(URL resource, File extractDirectory) throws IOException {
+        File file = toFile(resource);
+        if (file != null) {
+            return open(file);
+        }
+        Path extracted = Files.createTempFile(extractDirectory.toPath(), "icons", ".bundle");
+        try {
+            InputStream in = resource.openStream();
+            try {
+                Files.copy(in, extracted, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                in.close();
+            }
+            return open(extracted.toFile());
+        } finally {
+            try {
+                Files.delete(extracted);
+            } catch (IOException e) {
+                extracted.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * @return the file which a {@code file:} URL refers to, or {@code null} for other URLs
+     */
+    private static File toFile(URL resource) {
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                return new File(resource.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // Not a plain path; read it like any other resource
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a stream into a direct buffer, sized up-front if the length is known.
+     */
+    private static ByteBuffer readFully(InputStream in, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Icon bundle too large to read: " + length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((length >= 0) ? (int) length : 1 << 20);
+        ReadableByteChannel channel = Channels.newChannel(in);
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                if (length >= 0) {
+                    break;
+                }
+                ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the names of the icons, which are their paths relative to the directory they were
+     *         built from, using '/' as the separator (e.g. "actions/open.png").
+     */
+    public Set<String> getNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * @return the scalings (in percent) at which the icons were pre-rendered
+     */
+    public int[] getScalings() {
+        return scalings.clone();
+    }
+
+    /**
+     * @return the icon at the current global scaling, or {@code null} if there is none of that
+     *         name.
+     */
+    public Icon getIcon(String name) {
+        return getIcon(name, UiScaling.getScaling());
+    }
+
+    /**
+     * @return the icon at the given scaling, or {@code null} if there is none of that name.
+     */
+    public Icon getIcon(String name, int scalingInPercent) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        String key = name + '@' + scalingInPercent;
+        synchronized (icons) {
+            SoftReference<Icon> ref = icons.get(key);
+            Icon icon = (ref == null) ? null : ref.get();
+            if (icon != null) {
+                return icon;
+            }
+        }
+
+        int index = indexOf(scalingInPercent);
+        if (index < 0) {
+            // The 100% icon is always present, and is kept while its scaled icons are in use
+            return ScaledIcon.intern(getIcon(name, 100), scalingInPercent / 100f);
+        }
+        Icon icon = new ImageIcon(readImage(entry, index));
+        synchronized (icons) {
+            icons.put(key, new SoftReference<Icon>(icon));
+        }
+        return icon;
+    }
+
+    private int indexOf(int scaling) {
+        for (int i = 0; i < scalings.length; i++) {
+            if (scalings[i] == scaling) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the pixels from a slice of the bundle, which is the only copy made.
+     */
+    private BufferedImage readImage(Entry entry, int index) {
+        int width = entry.widths[index];
+        int height = entry.heights[index];
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(entry.offsets[index]);
+        slice.limit(entry.offsets[index] + pixels.length * 4);
+        slice.slice().asIntBuffer().get(pixels);
+        return image;
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        byte[] bytes = new byte[in.getShort() & 0xffff];
+        in.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * The index entry of one icon: its size and where its pixels are, at each scaling.
+     */
+    private static final class Entry {
+        final String name;
+        final int[] widths;
+        final int[] heights;
+        final int[] offsets;
+
+        Entry(String name, int scalingCount) {
+            this.name = name;
+            this.widths = new int[scalingCount];
+            this.heights = new int[scalingCount];
+            this.offsets = new int[scalingCount];
+        }
+    }
+}
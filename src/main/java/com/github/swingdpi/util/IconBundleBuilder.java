@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.imageio.ImageIO;
+
+import com.github.swingdpi.DpiUtils;
+
+/**
+ * Pre-renders a directory of icon images at each of a set of scalings, and packs them into one
+ * {@link IconBundle} file. It can be run as part of an application's build, so that clients need
+ * not rescale the icons at runtime:
+ * <pre>
+ *     java -cp swing-dpi.jar com.github.swingdpi.util.IconBundleBuilder icons/ icons.bundle
+ * </pre>
+ * Optionally, further arguments give the scalings (in percent) to render; by default these are
+ * {@link DpiUtils#STANDARD_SCALINGS}. 100% is always included, as the source for runtime
+ * scaling to other levels.
+ * <p>
+ * Icons are resampled in steps (halving first when shrinking by more than half), as animated icons
+ * are. This differs from the single bicubic transform which {@link ScaledIcon} applies at runtime,
+ * so an icon rendered here may differ slightly from the same icon scaled at runtime.
+ * <p>
+ * Pixels are stored uncompressed, so that they can be read straight from the mapped file. Files
+ * using the resolution-variant naming of {@link ResolutionVariantIcon} (e.g. "open@2x.png") are
+ * skipped.
+ */
+public final class IconBundleBuilder {
+    private IconBundleBuilder() {}
+
+    private static final String[] EXTENSIONS = { ".png", ".gif", ".jpg", ".jpeg", ".bmp" };
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IconBundleBuilder <icon directory> <bundle file> " +
+                    "[scaling%...]");
+            System.exit(2);
+        }
+        int[] scalings = DpiUtils.STANDARD_SCALINGS;
+        if (args.length > 2) {
+            scalings = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                scalings[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+        int count = build(new File(args[0]), new File(args[1]), scalings);
+        System.out.println("Wrote " + count + " icons at " +
+                Arrays.toString(withUnscaled(scalings)) + "% to " + args[1]);
+    }
+
+    /**
+     * @return the number of icons written
+     */
+    public static int build(File iconDirectory, File bundle, int[] scalings) throws IOException {
+        if (!iconDirectory.isDirectory()) {
+            throw new IOException("Not a directory: " + iconDirectory);
+        }
+        Map<String, BufferedImage> images = new TreeMap<String, BufferedImage>();
+        collect(iconDirectory, "", images);
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(bundle));
+        try {
+            write(images, withUnscaled(scalings), out);
+        } finally {
+            out.close();
+        }
+        return images.size();
+    }
+
+    private static int[] withUnscaled(int[] scalings) {
+        List<Integer> result = new ArrayList<Integer>();
+        result.add(100);
+        for (int scaling : scalings) {
+            if (!result.contains(scaling)) {
+                result.add(scaling);
+            }
+        }
+        int[] array = new int[result.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = result.get(i);
+        }
+        return array;
+    }
+
+    private static void collect(File directory, String prefix, Map<String, BufferedImage> images)
+            throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list " + directory);
+        }
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                collect(file, name + "/", images);
+            } else if (isIcon(file.getName())) {
+                BufferedImage image = ImageIO.read(file);
+                if (image == null) {
+                    throw new IOException("Unreadable image: " + file);
+                }
+                images.put(name, Resampling.toArgb(image));
+            }
+        }
+    }
+
+    private static boolean isIcon(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.matches(".*@[0-9.]+x\\.[a-z]+")) {
+            return false;
+        }
+        for (String extension : EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the index, and then the pixels of each icon at each scaling (as big-endian ARGB
+     * ints). Icons are rendered as they are written, so only the unscaled images are held in
+     * memory.
+     */
+    private static void write(Map<String, BufferedImage> images, int[] scalings, OutputStream out)
+            throws IOException {
+
+        // The index has a fixed size, whatever the offsets, so it is sized using dummy offsets
+        int indexSize = writeIndex(images, scalings, 0, new ByteArrayOutputStream());
+
+        DataOutputStream data = new DataOutputStream(out);
+        writeIndex(images, scalings, indexSize, data);
+        for (BufferedImage image : images.values()) {
+            for (int scaling : scalings) {
+                BufferedImage scaled = render(image, scaling);
+                int[] pixels = scaled.getRGB(0, 0, scaled.getWidth(), scaled.getHeight(), null, 0,
+                        scaled.getWidth());
+                for (int pixel : pixels) {
+                    data.writeInt(pixel);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * @return the size of the index, including padding to a multiple of 4 bytes
+     */
+    private static int writeIndex(Map<String, BufferedImage> images, int[] scalings,
+            int dataOffset, OutputStream target) throws IOException {
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(IconBundle.MAGIC);
+        out.writeInt(IconBundle.VERSION);
+        out.writeInt(scalings.length);
+        for (int scaling : scalings) {
+            out.writeInt(scaling);
+        }
+        out.writeInt(images.size());
+
+        long offset = dataOffset;
+        for (Map.Entry<String, BufferedImage> entry : images.entrySet()) {
+            byte[] name = entry.getKey().getBytes("UTF-8");
+            out.writeShort(name.length);
+            out.write(name);
+            BufferedImage image = entry.getValue();
+            for (int scaling : scalings) {
+                int width = scale(image.getWidth(), scaling);
+                int height = scale(image.getHeight(), scaling);
+                out.writeInt(width);
+                out.writeInt(height);
+                out.writeInt((int) offset);
+                offset += 4L * width * height;
+                if (offset > Integer.MAX_VALUE) {
+                    throw new IOException("Bundle too large");
+                }
+            }
+        }
+        while (out.size() % 4 != 0) {
+            out.writeByte(0);
+        }
+        out.flush();
+        return out.size();
+    }
+
+    /**
+     * Uses the same rounding as {@link ScaledIcon}.
+     */
+    private static int scale(int size, int scaling) {
+        return Math.max(1, Math.round(size * scaling / 100f));
+    }
+
+    private static BufferedImage render(BufferedImage image, int scaling) {
+        return Resampling.resize(image,
+                scale(image.getWidth(), scaling), scale(image.getHeight(), scaling));
+    }
+}
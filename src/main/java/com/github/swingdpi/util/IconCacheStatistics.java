@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+/**
+ * A snapshot of the rasters cached by {@link ScaledIcon}s; see
+ * {@link ScaledIcon#getCacheStatistics()}.
+ */
+public final class IconCacheStatistics {
+    private final int enabledCount;
+    private final long enabledBytes;
+    private final int disabledCount;
+    private final long disabledBytes;
+    private final long hits;
+    private final long misses;
+
+    IconCacheStatistics(int enabledCount, long enabledBytes, int disabledCount,
+            long disabledBytes, long hits, long misses) {
+        this.enabledCount = enabledCount;
+        this.enabledBytes = enabledBytes;
+        this.disabledCount = disabledCount;
+        this.disabledBytes = disabledBytes;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    public int getEnabledCount() {
+        return enabledCount;
+    }
+
+    public long getEnabledBytes() {
+        return enabledBytes;
+    }
+
+    public int getDisabledCount() {
+        return disabledCount;
+    }
+
+    public long getDisabledBytes() {
+        return disabledBytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return "enabled: " + enabledCount + " (" + enabledBytes + " bytes), disabled: " +
+                disabledCount + " (" + disabledBytes + " bytes), hits: " + hits +
+                ", misses: " + misses;
+    }
+}
@@ -24,7 +24,7 @@ import java.awt.Component;
 import java.awt.Graphics;
 
 import javax.swing.Icon;
-import javax.swing.UIManager;
+import javax.swing.UIDefaults;
 
 /**
  * This class exists to work-in with functionality of the Java-internal class
@@ -35,50 +35,91 @@ import javax.swing.UIManager;
  * So the various methods all end up in an infinite "you do it", "no you do it", "I don't want to
  * do it, you do it" argument (stack-overflow).
  * <p>
- * This is circumvented by reinstating our delegate into the UIDefault temporarily during the
- * duration of the method calls, and putting ourselves back in afterwards.
+ * This is circumvented by installing this icon as an {@link UIDefaults.ActiveValue}, which the
+ * UIDefaults ask for the value each time the key is looked up. While one of our own methods is
+ * running on a thread, the lookup made by the delegate on that thread finds the delegate itself;
+ * every other lookup finds this icon. So the table is never modified, and the icon may be used
+ * from any thread (e.g. for offscreen rendering).
+ * <p>
+ * If the icon is installed through a wrapper (such as an {@code IconUIResource}), the wrapper
+ * must also be an active value, forwarding to {@link #createValue(UIDefaults)}.
  */
-public class LoopBreakingScaledIcon extends ScaledIcon {
+public class LoopBreakingScaledIcon extends ScaledIcon implements UIDefaults.ActiveValue {
+
+    private final Object key;
 
-    private Object key;
+    /** Set while one of our methods is calling the delegate on the current thread. */
+    private final ThreadLocal<Boolean> delegating = new ThreadLocal<Boolean>();
 
+    /**
+     * @param key the key which this icon is installed under, in place of {@code icon}
+     */
     public LoopBreakingScaledIcon(Object key, Icon icon, float scaleFactor) {
         super(icon, scaleFactor);
         this.key = key;
     }
 
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return the delegate if it is looking itself up, via one of our methods on this thread,
+     *         otherwise this icon.
+     */
+    @Override
+    public Object createValue(UIDefaults table) {
+        return isDelegating() ? delegate : this;
+    }
+
+    /**
+     * @return whether one of our methods is calling the delegate on the current thread.
+     */
+    public boolean isDelegating() {
+        return Boolean.TRUE.equals(delegating.get());
+    }
+
     @Override
     public int getIconWidth() {
-        Object previous = UIManager.getLookAndFeelDefaults().put(key, delegate);
+        Boolean previous = beginDelegating();
         try {
             return super.getIconWidth();
         } finally {
-            UIManager.getLookAndFeelDefaults().put(key, previous);
+            endDelegating(previous);
         }
     }
 
     @Override
     public int getIconHeight() {
-        Object previous = UIManager.getLookAndFeelDefaults().put(key, delegate);
+        Boolean previous = beginDelegating();
         try {
             return super.getIconHeight();
         } finally {
-            UIManager.getLookAndFeelDefaults().put(key, previous);
+            endDelegating(previous);
         }
     }
 
     @Override
     public void paintIcon(Component c, Graphics g, int x, int y) {
-
-        // NOTE: if the UIManager has a bean-style property listener attached then this could
-        // _potentially_ cause costs that we would not normally like during a paint operation.
-        // However in typical usage there doesn't seem to ever be one installed. (Presumably it is
-        // there for GUI-builder scenarios, where the builder might want to observe changes(?))
-        Object previous = UIManager.getLookAndFeelDefaults().put(key, delegate);
+        Boolean previous = beginDelegating();
         try {
             super.paintIcon(c, g, x, y);
         } finally {
-            UIManager.getLookAndFeelDefaults().put(key, previous);
+            endDelegating(previous);
+        }
+    }
+
+    private Boolean beginDelegating() {
+        Boolean previous = delegating.get();
+        delegating.set(Boolean.TRUE);
+        return previous;
+    }
+
+    private void endDelegating(Boolean previous) {
+        if (previous == null) {
+            delegating.remove();
+        } else {
+            delegating.set(previous);
         }
     }
 }
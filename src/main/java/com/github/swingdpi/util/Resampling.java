@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Resizing of rasters, with the quality needed for icons.
+ */
+final class Resampling {
+    private Resampling() {}
+
+    /**
+     * Resizes an image. Reductions of more than half are made in successive halving steps first,
+     * since a single bilinear or bicubic step only samples the nearest source pixels, so drops
+     * detail (and aliases) when shrinking by more than that.
+     *
+     * @return a new image of {@link BufferedImage#TYPE_INT_ARGB}, or {@code source} itself if it is
+     *         already of that type and size.
+     */
+    static BufferedImage resize(BufferedImage source, int width, int height) {
+        BufferedImage current = toArgb(source);
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        if (current.getWidth() == width && current.getHeight() == height) {
+            return current;
+        }
+        return draw(current, width, height, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    /**
+     * @return the image as {@link BufferedImage#TYPE_INT_ARGB}; e.g. images read by ImageIO are
+     *         often indexed, which can't be resampled well.
+     */
+    static BufferedImage toArgb(Image image) {
+        if (image instanceof BufferedImage &&
+                ((BufferedImage) image).getType() == BufferedImage.TYPE_INT_ARGB) {
+            return (BufferedImage) image;
+        }
+        return draw(image, image.getWidth(null), image.getHeight(null),
+                RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    private static BufferedImage draw(Image source, int width, int height, Object interpolation) {
+        BufferedImage result = new BufferedImage(
+                Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = result.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.drawImage(source, 0, 0, result.getWidth(), result.getHeight(), null);
+        } finally {
+            g2.dispose();
+        }
+        return result;
+    }
+}
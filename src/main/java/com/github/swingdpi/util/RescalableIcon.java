@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import javax.swing.Icon;
+
+/**
+ * An icon which can render itself at any scaling, so that when installed in the UI defaults the
+ * tweakers ask it for a scaled version rather than scaling its bitmap.
+ */
+public interface RescalableIcon extends Icon {
+
+    /**
+     * @param scale the scaling relative to the icon's unscaled (100%) size
+     * @return an icon of the same image at that scaling.
+     */
+    Icon withScale(float scale);
+}
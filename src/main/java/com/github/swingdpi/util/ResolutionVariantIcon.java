@@ -0,0 +1,285 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.AbstractButton;
+import javax.swing.GrayFilter;
+import javax.swing.Icon;
+
+import com.github.swingdpi.UiScaling;
+
+/**
+ * An icon loaded from a set of bitmap resources at different resolutions, following the common
+ * naming convention: e.g. {@code open.png}, {@code open@2x.png} and {@code open@3x.png}.
+ * <p>
+ * To paint at a given size it picks the smallest variant at least as large, and downsamples
+ * that; which is both cheaper and much sharper than upsampling the 100% bitmap. Only the variants
+ * actually needed are loaded, and the raster produced for each size is cached.
+ * <p>
+ * Icons from {@link #forResource(Class, String)} follow the global {@link UiScaling} level;
+ * {@link #withScale(float)} gives one with a fixed scaling, as used for the UI defaults.
+ */
+public class ResolutionVariantIcon implements RescalableIcon {
+
+    /** The variant suffixes looked for, e.g. "@2x", in order of increasing scale. */
+    private static final float[] VARIANT_SCALES = { 1f, 1.25f, 1.5f, 2f, 2.5f, 3f, 4f };
+
+    /** Means the icon follows {@link UiScaling#getScalingFactor()}. */
+    private static final float GLOBAL_SCALING = 0f;
+
+    private final Variants variants;
+    private final float scaleFactor;
+
+    /**
+     * Threading: all access to the following must synchronize on this
+     */
+    private final Map<Long, SoftReference<Image>> enabledRasters =
+            new HashMap<Long, SoftReference<Image>>();
+    private final Map<Long, SoftReference<Image>> disabledRasters =
+            new HashMap<Long, SoftReference<Image>>();
+
+    private ResolutionVariantIcon(Variants variants, float scaleFactor) {
+        this.variants = variants;
+        this.scaleFactor = scaleFactor;
+    }
+
+    /**
+     * Finds the resolution variants of a resource, without loading them.
+     *
+     * @param anchor the class to resolve the resource name relative to, as per
+     *        {@link Class#getResource(String)}
+     * @param name the name of the 100% resource, e.g. "icons/open.png". This resource need not
+     *        exist if others do.
+     * @throws IllegalArgumentException if no variant of the resource exists
+     */
+    public static ResolutionVariantIcon forResource(Class<?> anchor, String name) {
+        int dot = name.lastIndexOf('.');
+        int slash = name.lastIndexOf('/');
+        String stem = (dot > slash) ? name.substring(0, dot) : name;
+        String extension = (dot > slash) ? name.substring(dot) : "";
+
+        List<Variant> found = new ArrayList<Variant>();
+        for (float scale : VARIANT_SCALES) {
+            String variantName = (scale == 1f) ? name : stem + "@" + formatScale(scale) + "x" +
+                    extension;
+            URL url = anchor.getResource(variantName);
+            if (url != null) {
+                found.add(new Variant(url, scale));
+            }
+        }
+        if (found.isEmpty()) {
+            throw new IllegalArgumentException("No resolution variant of resource: " + name);
+        }
+        return new ResolutionVariantIcon(new Variants(found), GLOBAL_SCALING);
+    }
+
+    private static String formatScale(float scale) {
+        return (scale == Math.round(scale)) ? String.valueOf(Math.round(scale)) :
+                String.valueOf(scale);
+    }
+
+    /**
+     * @return an icon sharing the same variants (and loaded images) at a fixed scaling.
+     */
+    @Override
+    public ResolutionVariantIcon withScale(float scale) {
+        return new ResolutionVariantIcon(variants, scale);
+    }
+
+    private float getEffectiveScaleFactor() {
+        return (scaleFactor == GLOBAL_SCALING) ? UiScaling.getScalingFactor() : scaleFactor;
+    }
+
+    @Override
+    public int getIconWidth() {
+        return Math.round(variants.getUnscaledWidth() * getEffectiveScaleFactor());
+    }
+
+    @Override
+    public int getIconHeight() {
+        return Math.round(variants.getUnscaledHeight() * getEffectiveScaleFactor());
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+        int width = getIconWidth();
+        int height = getIconHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        // Target the device resolution, e.g. where Java itself applies HiDPI scaling (Java 9+)
+        AffineTransform at = (g instanceof Graphics2D) ?
+                ((Graphics2D) g).getTransform() : new AffineTransform();
+        int deviceWidth = Math.max(1, (int) Math.round(width * Math.abs(at.getScaleX())));
+        int deviceHeight = Math.max(1, (int) Math.round(height * Math.abs(at.getScaleY())));
+
+        boolean enabled = !(c instanceof AbstractButton) || c.isEnabled();
+        g.drawImage(getRaster(deviceWidth, deviceHeight, enabled), x, y, width, height, null);
+    }
+
+    private synchronized Image getRaster(int width, int height, boolean enabled) {
+        Map<Long, SoftReference<Image>> rasters = enabled ? enabledRasters : disabledRasters;
+        Long key = ((long) width << 32) | height;
+        SoftReference<Image> ref = rasters.get(key);
+        Image raster = (ref == null) ? null : ref.get();
+        if (raster == null) {
+            if (enabled) {
+                raster = Resampling.resize(variants.getSourceFor(width, height), width, height);
+            } else {
+                raster = GrayFilter.createDisabledImage(getRaster(width, height, true));
+            }
+            rasters.put(key, new SoftReference<Image>(raster));
+        }
+        return raster;
+    }
+
+    /**
+     * The resources found for an icon, shared by the icons derived from it.
+     */
+    private static final class Variants {
+
+        /** In order of increasing scale. */
+        private final List<Variant> variants;
+
+        private int unscaledWidth = -1;
+        private int unscaledHeight = -1;
+
+        Variants(List<Variant> variants) {
+            this.variants = Collections.unmodifiableList(variants);
+        }
+
+        synchronized int getUnscaledWidth() {
+            readUnscaledSize();
+            return unscaledWidth;
+        }
+
+        synchronized int getUnscaledHeight() {
+            readUnscaledSize();
+            return unscaledHeight;
+        }
+
+        /**
+         * Only the header of the smallest variant is read, to avoid decoding any pixels until
+         * the icon is painted.
+         */
+        private void readUnscaledSize() {
+            if (unscaledWidth >= 0) {
+                return;
+            }
+            Variant smallest = variants.get(0);
+            int[] size = smallest.readSize();
+            unscaledWidth = Math.round(size[0] / smallest.scale);
+            unscaledHeight = Math.round(size[1] / smallest.scale);
+        }
+
+        /**
+         * @return the smallest variant at least as large as the given size (or if none are, the
+         *         largest).
+         */
+        synchronized BufferedImage getSourceFor(int width, int height) {
+            readUnscaledSize();
+            for (Variant variant : variants) {
+                if (Math.round(unscaledWidth * variant.scale) >= width &&
+                        Math.round(unscaledHeight * variant.scale) >= height) {
+                    return variant.getImage();
+                }
+            }
+            return variants.get(variants.size() - 1).getImage();
+        }
+    }
+
+    private static final class Variant {
+        final URL url;
+        final float scale;
+        private SoftReference<BufferedImage> image = new SoftReference<BufferedImage>(null);
+
+        Variant(URL url, float scale) {
+            this.url = url;
+            this.scale = scale;
+        }
+
+        int[] readSize() {
+            try {
+                InputStream in = url.openStream();
+                try {
+                    ImageInputStream stream = ImageIO.createImageInputStream(in);
+                    Iterator<ImageReader> readers = (stream == null) ?
+                            Collections.<ImageReader>emptyIterator() :
+                            ImageIO.getImageReaders(stream);
+                    if (readers.hasNext()) {
+                        ImageReader reader = readers.next();
+                        try {
+                            reader.setInput(stream, true, true);
+                            return new int[] { reader.getWidth(0), reader.getHeight(0) };
+                        } finally {
+                            reader.dispose();
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read " + url, e);
+            }
+
+            // No reader for just the header: decode it all
+            BufferedImage loaded = getImage();
+            return new int[] { loaded.getWidth(), loaded.getHeight() };
+        }
+
+        BufferedImage getImage() {
+            BufferedImage loaded = image.get();
+            if (loaded == null) {
+                try {
+                    loaded = ImageIO.read(url);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to read " + url, e);
+                }
+                if (loaded == null) {
+                    throw new IllegalStateException("Unsupported image format: " + url);
+                }
+                image = new SoftReference<BufferedImage>(loaded);
+            }
+            return loaded;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.swing.AbstractButton;
+import javax.swing.GrayFilter;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import org.w3c.dom.Node;
+
+/**
+ * A scaled icon for an animated image, such as a "busy" spinner GIF. Use this in place of
+ * {@link ScaledIcon}, which caches a single raster so would freeze the animation.
+ * <p>
+ * Only the encoded image is kept. Each frame is decoded (and composited as the GIF's disposal
+ * methods specify) when it is needed, continuing from the previous frame as the animation plays,
+ * and is resampled to the scaled size. The scaled rasters are kept in a least-recently-used cache
+ * bounded to {@link #setCacheLimit(long) a number of bytes}, so long animations cost a bounded
+ * amount of memory at the price of decoding and resampling again.
+ * <p>
+ * The icon drives its own animation: components which paint it are repainted (just where they
+ * painted it) after each frame's delay. When no component paints it for a whole frame, for
+ * example because they are hidden, the animation pauses until it is next painted.
+ */
+public class ScaledAnimatedIcon implements RescalableIcon {
+
+    /** The default limit of the bytes of scaled rasters cached by each icon. */
+    public static final long DEFAULT_CACHE_LIMIT = 4L * 1024 * 1024;
+
+    /** Delays shorter than this are shown with the default delay, as browsers do. */
+    private static final int MIN_DELAY_MILLIS = 20;
+    private static final int DEFAULT_DELAY_MILLIS = 100;
+
+    private static final String GIF_IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final String GIF_STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+
+    private final Frames frames;
+    private final float scaleFactor;
+
+    /**
+     * Scaled rasters, by frame index (negated less one for disabled rasters), least recently
+     * used first.
+     * <p>
+     * Threading: all access must synchronize on this final member
+     */
+    private final LinkedHashMap<Integer, BufferedImage> rasters =
+            new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true);
+    private long rasterBytes;
+    private long cacheLimit = DEFAULT_CACHE_LIMIT;
+
+    /**
+     * Where each component painted the icon since the frame last changed.
+     * <p>
+     * Threading: the following are only accessed on the EDT
+     */
+    private final Map<Component, Rectangle> observers = new WeakHashMap<Component, Rectangle>();
+    private Timer timer;
+
+    private volatile int frameIndex;
+
+    private ScaledAnimatedIcon(Frames frames, float scaleFactor) {
+        this.frames = frames;
+        this.scaleFactor = scaleFactor;
+    }
+
+    /**
+     * @param url an animated GIF (or any image which ImageIO can read; a single image simply
+     *        doesn't animate)
+     * @param scaleFactor the scaling to apply to the image's size
+     */
+    public static ScaledAnimatedIcon read(URL url, float scaleFactor) throws IOException {
+        return read(url.openStream(), scaleFactor);
+    }
+
+    /**
+     * As {@link #read(URL, float)}; the stream is closed.
+     */
+    public static ScaledAnimatedIcon read(InputStream in, float scaleFactor) throws IOException {
+        byte[] data;
+        try {
+            data = readFully(in);
+        } finally {
+            in.close();
+        }
+        return new ScaledAnimatedIcon(Frames.read(data), scaleFactor);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return an icon with the same (shared) frames at the given scaling of their unscaled size
+     */
+    @Override
+    public ScaledAnimatedIcon withScale(float scale) {
+        return new ScaledAnimatedIcon(frames, scale);
+    }
+
+    public float getScaleFactor() {
+        return scaleFactor;
+    }
+
+    public int getFrameCount() {
+        return frames.delays.length;
+    }
+
+    public long getCacheLimit() {
+        synchronized (rasters) {
+            return cacheLimit;
+        }
+    }
+
+    /**
+     * Sets the most bytes of scaled rasters to keep. The raster being shown is always kept,
+     * even if it alone exceeds the limit.
+     */
+    public void setCacheLimit(long bytes) {
+        synchronized (rasters) {
+            cacheLimit = bytes;
+            trim(null);
+        }
+    }
+
+    /**
+     * @return the bytes of the scaled rasters currently cached
+     */
+    public long getCachedBytes() {
+        synchronized (rasters) {
+            return rasterBytes;
+        }
+    }
+
+    @Override
+    public int getIconWidth() {
+        return Math.round(frames.width * scaleFactor);
+    }
+
+    @Override
+    public int getIconHeight() {
+        return Math.round(frames.height * scaleFactor);
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+        int width = getIconWidth();
+        int height = getIconHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        boolean enabled = !(c instanceof AbstractButton) || c.isEnabled();
+        g.drawImage(getRaster(frameIndex, enabled, width, height), x, y, null);
+
+        if (c != null && frames.delays.length > 1 && SwingUtilities.isEventDispatchThread()) {
+            observers.put(c, new Rectangle(x, y, width, height));
+            if (timer == null) {
+                timer = new Timer(0, new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        nextFrame();
+                    }
+                });
+                timer.setRepeats(false);
+            }
+            if (!timer.isRunning()) {
+                timer.setInitialDelay(frames.delays[frameIndex]);
+                timer.start();
+            }
+        }
+    }
+
+    private void nextFrame() {
+        if (observers.isEmpty()) {
+            return; // Not painted for a whole frame: pause until next painted
+        }
+        frameIndex = (frameIndex + 1) % frames.delays.length;
+
+        // Only components which paint the new frame stay registered for the one after
+        List<Map.Entry<Component, Rectangle>> painted =
+                new ArrayList<Map.Entry<Component, Rectangle>>(observers.entrySet());
+        observers.clear();
+        for (Map.Entry<Component, Rectangle> entry : painted) {
+            Component c = entry.getKey();
+            Rectangle r = entry.getValue();
+            if (c != null && c.isShowing()) {
+                c.repaint(r.x, r.y, r.width, r.height);
+            }
+        }
+        timer.setInitialDelay(frames.delays[frameIndex]);
+        timer.start();
+    }
+
+    private BufferedImage getRaster(int index, boolean enabled, int width, int height) {
+        Integer key = enabled ? index : -index - 1;
+        synchronized (rasters) {
+            BufferedImage raster = rasters.get(key);
+            if (raster != null) {
+                return raster;
+            }
+        }
+
+        // Resample outside the lock; at worst two threads do the same work
+        BufferedImage raster = Resampling.resize(frames.get(index), width, height);
+        if (!enabled) {
+            raster = Resampling.toArgb(GrayFilter.createDisabledImage(raster));
+        }
+        synchronized (rasters) {
+            BufferedImage previous = rasters.put(key, raster);
+            if (previous != null) {
+                rasterBytes -= getBytes(previous);
+            }
+            rasterBytes += getBytes(raster);
+            trim(key);
+        }
+        return raster;
+    }
+
+    /**
+     * Evicts the least recently used rasters (other than {@code keep}) until within the limit.
+     */
+    private void trim(Integer keep) {
+        Iterator<Map.Entry<Integer, BufferedImage>> it = rasters.entrySet().iterator();
+        while (rasterBytes > cacheLimit && it.hasNext()) {
+            Map.Entry<Integer, BufferedImage> entry = it.next();
+            if (!entry.getKey().equals(keep)) {
+                rasterBytes -= getBytes(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private static long getBytes(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * The encoded animation, which decodes its unscaled, fully composited frames on demand, and
+     * their delays.
+     */
+    private static final class Frames {
+        final byte[] data;
+        final int width;
+        final int height;
+        final int[] delays;
+
+        /**
+         * Decoding continues from the last frame decoded, since each frame is composited over
+         * the ones before it. The decoder is released after the last frame.
+         * <p>
+         * Threading: the following are only accessed while synchronized on this
+         */
+        private ImageReader reader;
+        private ImageInputStream stream;
+        private BufferedImage canvas;
+        private BufferedImage lastFrame;
+        private int nextIndex;
+
+        private Frames(byte[] data, int width, int height, int[] delays) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            this.delays = delays;
+        }
+
+        /**
+         * Reads the size and delays, and decodes the first frame to check that it can be.
+         */
+        static Frames read(byte[] data) throws IOException {
+            ImageInputStream stream = openStream(data);
+            try {
+                ImageReader reader = createReader(stream);
+                try {
+                    int count = reader.getNumImages(true);
+                    if (count < 1) {
+                        throw new IOException("No images");
+                    }
+                    int[] size = readLogicalScreenSize(reader.getStreamMetadata());
+                    int width = (size != null) ? size[0] : reader.getWidth(0);
+                    int height = (size != null) ? size[1] : reader.getHeight(0);
+
+                    int[] delays = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        Map<String, String> attributes =
+                                readFrameAttributes(reader.getImageMetadata(i));
+
+                        // GIF delays are in hundredths of a second
+                        int delay = parseInt(attributes.get("delayTime"), 0) * 10;
+                        delays[i] = (delay < MIN_DELAY_MILLIS) ? DEFAULT_DELAY_MILLIS : delay;
+                    }
+                    Frames frames = new Frames(data, width, height, delays);
+                    frames.get(0);
+                    return frames;
+                } finally {
+                    reader.dispose();
+                }
+            } finally {
+                stream.close();
+            }
+        }
+
+        private static ImageInputStream openStream(byte[] data) {
+            return new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+        }
+
+        private static ImageReader createReader(ImageInputStream stream) throws IOException {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            reader.setInput(stream, false, false);
+            return reader;
+        }
+
+        /**
+         * @return the composited frame, which must not be modified
+         */
+        BufferedImage get(int index) {
+            try {
+                synchronized (this) {
+                    if (index == nextIndex - 1 && lastFrame != null) {
+                        return lastFrame;
+                    }
+                    if (reader == null || index < nextIndex) {
+                        restart();
+                    }
+                    BufferedImage frame = null;
+                    while (nextIndex <= index) {
+                        frame = decodeNext();
+                    }
+                    lastFrame = frame;
+                    if (nextIndex == delays.length) {
+                        release();
+                    }
+                    return frame;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Can not decode frame " + index, e);
+            }
+        }
+
+        private void restart() throws IOException {
+            release();
+            stream = openStream(data);
+            reader = createReader(stream);
+            canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            nextIndex = 0;
+        }
+
+        private void release() throws IOException {
+            if (reader != null) {
+                reader.dispose();
+                reader = null;
+            }
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            }
+            canvas = null;
+        }
+
+        private BufferedImage decodeNext() throws IOException {
+            int i = nextIndex++;
+            BufferedImage image = reader.read(i);
+            Map<String, String> attributes = readFrameAttributes(reader.getImageMetadata(i));
+            int left = parseInt(attributes.get("imageLeftPosition"), 0);
+            int top = parseInt(attributes.get("imageTopPosition"), 0);
+            String disposal = attributes.get("disposalMethod");
+
+            BufferedImage previous = "restoreToPrevious".equals(disposal) ? copy(canvas) : null;
+            BufferedImage frame;
+            Graphics2D g2 = canvas.createGraphics();
+            try {
+                g2.drawImage(image, left, top, null);
+                frame = copy(canvas);
+
+                if ("restoreToBackgroundColor".equals(disposal)) {
+                    g2.setComposite(AlphaComposite.Clear);
+                    g2.fillRect(left, top, image.getWidth(), image.getHeight());
+                }
+            } finally {
+                g2.dispose();
+            }
+            if (previous != null) {
+                canvas = previous;
+            }
+            return frame;
+        }
+
+        private static int[] readLogicalScreenSize(IIOMetadata metadata) {
+            if (!isFormat(metadata, GIF_STREAM_FORMAT)) {
+                return null;
+            }
+            Map<String, String> attributes = new HashMap<String, String>();
+            collectAttributes(metadata.getAsTree(GIF_STREAM_FORMAT), attributes);
+            int width = parseInt(attributes.get("logicalScreenWidth"), 0);
+            int height = parseInt(attributes.get("logicalScreenHeight"), 0);
+            return (width > 0 && height > 0) ? new int[] { width, height } : null;
+        }
+
+        /**
+         * @return the attributes of all of the frame's GIF metadata nodes, or none if it isn't a
+         *         GIF (in which case the frames are simply drawn over each other).
+         */
+        private static Map<String, String> readFrameAttributes(IIOMetadata metadata) {
+            Map<String, String> attributes = new HashMap<String, String>();
+            if (isFormat(metadata, GIF_IMAGE_FORMAT)) {
+                collectAttributes(metadata.getAsTree(GIF_IMAGE_FORMAT), attributes);
+            }
+            return attributes;
+        }
+
+        private static boolean isFormat(IIOMetadata metadata, String format) {
+            return metadata != null && format.equals(metadata.getNativeMetadataFormatName());
+        }
+
+        private static void collectAttributes(Node node, Map<String, String> attributes) {
+            if (node instanceof IIOMetadataNode && node.getAttributes() != null) {
+                for (int i = 0; i < node.getAttributes().getLength(); i++) {
+                    Node attribute = node.getAttributes().item(i);
+                    attributes.put(attribute.getNodeName(), attribute.getNodeValue());
+                }
+            }
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                collectAttributes(child, attributes);
+            }
+        }
+
+        private static int parseInt(String value, int fallback) {
+            try {
+                return (value == null) ? fallback : Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+
+        private static BufferedImage copy(BufferedImage image) {
+            BufferedImage copy = new BufferedImage(
+                    image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = copy.createGraphics();
+            try {
+                g2.setComposite(AlphaComposite.Src);
+                g2.drawImage(image, 0, 0, null);
+            } finally {
+                g2.dispose();
+            }
+            return copy;
+        }
+    }
+}
@@ -23,10 +23,24 @@ package com.github.swingdpi.util;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.AbstractButton;
 import javax.swing.Icon;
@@ -35,26 +49,123 @@ import javax.swing.JComponent;
 import javax.swing.UIManager;
 
 public class ScaledIcon implements Icon {
+
+    /** The icons which have cached a raster, so that caches can be measured and cleared. */
+    private static final Set<ScaledIcon> s_cachingIcons = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<ScaledIcon, Boolean>()));
+
+    /**
+     * The canonical instances from {@link #intern(Icon, float)}, by delegate and then by scale.
+     * <p>
+     * Threading: all access must synchronize on this final member
+     */
+    private static final Map<Icon, Map<Float, Interned>> s_interned =
+            new WeakHashMap<Icon, Map<Float, Interned>>();
+
+    /** One (immutable, so shareable) operation per scale factor. */
+    private static final ConcurrentMap<Float, AffineTransformOp> s_scaleOperations =
+            new ConcurrentHashMap<Float, AffineTransformOp>();
+
+    private static final AtomicLong s_cacheHits = new AtomicLong();
+    private static final AtomicLong s_cacheMisses = new AtomicLong();
+
     protected final Icon delegate;
     protected final float scaleFactor;
     private final AffineTransformOp scaleOperation;
-    private SoftReference<ImageIcon> enabledIcon = new SoftReference<ImageIcon>(null);
-    private SoftReference<ImageIcon> disabledIcon = new SoftReference<ImageIcon>(null);
+
+    /**
+     * The cached rasters. Icons may be painted concurrently (e.g. by offscreen rendering on
+     * worker threads), so a raster is only ever published whole, by an atomic swap.
+     */
+    private final AtomicReference<SoftReference<Icon>> enabledIcon;
+    private final AtomicReference<SoftReference<Icon>> disabledIcon;
+
+    /** Whether painted since the last {@link #trimCaches()}. */
+    private volatile boolean paintedSinceTrim;
 
     public ScaledIcon(Icon icon, float scaleFactor) {
+        this(icon, scaleFactor, newRasterCache(), newRasterCache());
+    }
 
-        // Ensure we don't repeatedly scale icons. Callers must have reset the L&F before
-        // calling and take care not to scale an icon multiple times, e.g. when iterating the
-        // UI-defaults. This can be tricky since UI-defaults may cross-reference each other.
+    /**
+     * @param enabledIcon the cache of the enabled raster, which may be shared with an earlier
+     *        instance for the same delegate and scale
+     * @param disabledIcon likewise, for the disabled raster
+     */
+    private ScaledIcon(Icon icon, float scaleFactor,
+            AtomicReference<SoftReference<Icon>> enabledIcon,
+            AtomicReference<SoftReference<Icon>> disabledIcon) {
+
+        // Ensure we don't repeatedly scale icons. UiDefaultsScaler always scales from the
+        // original (unscaled) defaults and skips values which a tweaker created, including
+        // those reached through cross-references between UI-defaults.
         assert !(icon instanceof ScaledIcon) &&
                 !icon.getClass().getSimpleName().contains("ScaledIconUIResource") :
                         "Icon is a:  " + icon.getClass().getName();
 
         delegate = icon;
         this.scaleFactor = scaleFactor;
-        scaleOperation = new AffineTransformOp(
-                AffineTransform.getScaleInstance(scaleFactor, scaleFactor),
-                AffineTransformOp.TYPE_BICUBIC);
+        scaleOperation = getScaleOperation(scaleFactor);
+        this.enabledIcon = enabledIcon;
+        this.disabledIcon = disabledIcon;
+    }
+
+    /**
+     * Returns the canonical scaled icon for the given icon and scale, creating it if need be.
+     * Renderers should use this rather than the constructor, so that an icon shown in many cells
+     * is rasterized (and its raster stored) just once per scale, across the whole application.
+     * <p>
+     * The canonical instances are held weakly, since each one references its delegate. Their
+     * rasters are held softly, and are passed on to the next canonical instance if need be, for
+     * as long as the delegate itself is reachable.
+     */
+    public static ScaledIcon intern(Icon icon, float scaleFactor) {
+        synchronized (s_interned) {
+            Map<Float, Interned> byScale = s_interned.get(icon);
+            if (byScale == null) {
+                byScale = new HashMap<Float, Interned>(4);
+                s_interned.put(icon, byScale);
+            }
+            Interned interned = byScale.get(scaleFactor);
+            if (interned == null) {
+                interned = new Interned();
+                byScale.put(scaleFactor, interned);
+            }
+            ScaledIcon scaled = interned.icon.get();
+            if (scaled == null) {
+                scaled = new ScaledIcon(
+                        icon, scaleFactor, interned.enabledIcon, interned.disabledIcon);
+                interned.icon = new WeakReference<ScaledIcon>(scaled);
+            }
+            return scaled;
+        }
+    }
+
+    /**
+     * A canonical instance and its rasters, neither of which keep the delegate reachable.
+     */
+    private static final class Interned {
+        WeakReference<ScaledIcon> icon = new WeakReference<ScaledIcon>(null);
+        final AtomicReference<SoftReference<Icon>> enabledIcon = newRasterCache();
+        final AtomicReference<SoftReference<Icon>> disabledIcon = newRasterCache();
+    }
+
+    private static AtomicReference<SoftReference<Icon>> newRasterCache() {
+        return new AtomicReference<SoftReference<Icon>>(new SoftReference<Icon>(null));
+    }
+
+    private static AffineTransformOp getScaleOperation(float scaleFactor) {
+        AffineTransformOp op = s_scaleOperations.get(scaleFactor);
+        if (op == null) {
+            op = new AffineTransformOp(
+                    AffineTransform.getScaleInstance(scaleFactor, scaleFactor),
+                    AffineTransformOp.TYPE_BICUBIC);
+            AffineTransformOp existing = s_scaleOperations.putIfAbsent(scaleFactor, op);
+            if (existing != null) {
+                op = existing;
+            }
+        }
+        return op;
     }
 
     @Override
@@ -66,30 +177,88 @@ public class ScaledIcon implements Icon {
             return;
         }
 
+        paintedSinceTrim = true;
         boolean renderEnabled = !(c instanceof AbstractButton) || c.isEnabled();
-        ImageIcon icon = renderEnabled ? enabledIcon.get() : disabledIcon.get();
-        if (icon == null) {
+        AtomicReference<SoftReference<Icon>> cache = renderEnabled ? enabledIcon : disabledIcon;
+        Icon icon = getCached(cache);
+        if (icon != null) {
+            s_cacheHits.incrementAndGet();
+        } else {
+            s_cacheMisses.incrementAndGet();
             icon = new ImageIcon(paintToImageThenScale(c));
             if (delegate instanceof ImageIcon) {
-                if (renderEnabled) {
-                    enabledIcon = new SoftReference<ImageIcon>(icon);
-                } else {
+                if (!renderEnabled && c instanceof JComponent) {
 
                     // Note that LookAndFeel#getDisabledIcon only operates upon ImageIcon (despite
                     // having a parameter that takes any Icon). Therefore if 'delegate' is an
                     // ImageIcon we need to render it disabled ourselves, since this class does
                     // not extend ImageIcon.
-                    if (c instanceof JComponent) {
-                        icon = (ImageIcon) UIManager.getLookAndFeel().getDisabledIcon(
-                                (JComponent) c, icon);
-                    }
-                    disabledIcon = new SoftReference<ImageIcon>(icon);
+                    icon = UIManager.getLookAndFeel().getDisabledIcon((JComponent) c, icon);
                 }
+                icon = publish(cache, shareIfPossible(icon));
             }
         }
         icon.paintIcon(c, g, x, y);
     }
 
+    private static Icon getCached(AtomicReference<SoftReference<Icon>> cache) {
+        return getValid(cache.get());
+    }
+
+    private static Icon getValid(SoftReference<Icon> ref) {
+        Icon icon = ref.get();
+        if (icon instanceof IconAtlas.Region && !((IconAtlas.Region) icon).isValid()) {
+            return null;
+        }
+        return icon;
+    }
+
+    /**
+     * Caches a raster, unless another thread has just cached one (which is then used instead, so
+     * that all threads share a single copy).
+     *
+     * @return the cached raster.
+     */
+    private Icon publish(AtomicReference<SoftReference<Icon>> cache, Icon icon) {
+        s_cachingIcons.add(this);
+        while (true) {
+            SoftReference<Icon> current = cache.get();
+            Icon existing = getValid(current);
+            if (existing != null) {
+                return existing;
+            }
+            if (cache.compareAndSet(current, new SoftReference<Icon>(icon))) {
+                return icon;
+            }
+        }
+    }
+
+    /**
+     * @return a region of the shared {@link IconAtlas} holding the icon's pixels if atlas mode is
+     *         enabled and the icon is small enough, otherwise the icon itself.
+     */
+    private static Icon shareIfPossible(Icon icon) {
+        int width = icon.getIconWidth();
+        int height = icon.getIconHeight();
+        if (!(icon instanceof ImageIcon) || !IconAtlas.accepts(width, height)) {
+            return icon;
+        }
+        Image source = ((ImageIcon) icon).getImage();
+        BufferedImage image;
+        if (source instanceof BufferedImage) {
+            image = (BufferedImage) source;
+        } else {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
+            try {
+                g2.drawImage(source, 0, 0, null);
+            } finally {
+                g2.dispose();
+            }
+        }
+        return IconAtlas.add(image);
+    }
+
     /**
      * Paints to an image at 100% then performs bicubic scaling to 'scaleFactor'. This approach has
      * consistently produced better quality results. Although some icon painting might use
@@ -151,6 +320,86 @@ public class ScaledIcon implements Icon {
     }
     */
 
+    /**
+     * @return a snapshot of the rasters cached by all icons, and the hits and misses to date.
+     *         (A "miss" is any paint which rendered a raster, including of icons which are never
+     *         cached because they may change dynamically.)
+     */
+    public static IconCacheStatistics getCacheStatistics() {
+        int enabledCount = 0;
+        long enabledBytes = 0;
+        int disabledCount = 0;
+        long disabledBytes = 0;
+        for (ScaledIcon icon : getCachingIcons()) {
+            Icon enabled = getCached(icon.enabledIcon);
+            if (enabled != null) {
+                enabledCount++;
+                enabledBytes += getRasterBytes(enabled);
+            }
+            Icon disabled = getCached(icon.disabledIcon);
+            if (disabled != null) {
+                disabledCount++;
+                disabledBytes += getRasterBytes(disabled);
+            }
+        }
+        return new IconCacheStatistics(enabledCount, enabledBytes, disabledCount, disabledBytes,
+                s_cacheHits.get(), s_cacheMisses.get());
+    }
+
+    /**
+     * Regions of the {@link IconAtlas} count as zero, since they may be shared: the atlas reports
+     * its memory use separately.
+     */
+    private static long getRasterBytes(Icon icon) {
+        if (icon instanceof IconAtlas.Region) {
+            return 0;
+        }
+        Object image = (icon instanceof ImageIcon) ? ((ImageIcon) icon).getImage() : null;
+        if (!(image instanceof BufferedImage)) {
+
+            // E.g. a disabled icon, from a filtered image producer: assume 32-bit pixels
+            return 4L * icon.getIconWidth() * icon.getIconHeight();
+        }
+        DataBuffer buffer = ((BufferedImage) image).getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() *
+                DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Drops every cached raster. They are re-rendered as the icons are next painted.
+     */
+    public static void clearCaches() {
+        for (ScaledIcon icon : getCachingIcons()) {
+            icon.clearCache();
+        }
+    }
+
+    /**
+     * Drops the cached rasters of the icons which have not been painted since the previous call,
+     * e.g. to release memory when the application is idle.
+     */
+    public static void trimCaches() {
+        for (ScaledIcon icon : getCachingIcons()) {
+            if (!icon.paintedSinceTrim) {
+                icon.clearCache();
+            }
+            icon.paintedSinceTrim = false;
+        }
+        IconAtlas.trim();
+    }
+
+    private static List<ScaledIcon> getCachingIcons() {
+        synchronized (s_cachingIcons) {
+            return new ArrayList<ScaledIcon>(s_cachingIcons);
+        }
+    }
+
+    private void clearCache() {
+        enabledIcon.set(new SoftReference<Icon>(null));
+        disabledIcon.set(new SoftReference<Icon>(null));
+        s_cachingIcons.remove(this);
+    }
+
     @Override
     public int getIconWidth() {
         return Math.round(delegate.getIconWidth() * scaleFactor);
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+
+import com.github.swingdpi.UiScaling;
+
+/**
+ * Loads icons from images which are much larger than they are shown, such as photos or
+ * high-resolution artwork, without ever holding the full-resolution raster. (Whereas a
+ * {@link ScaledIcon} of an {@link ImageIcon} keeps both the original and its scaled copy.)
+ * <p>
+ * The image is decoded using ImageIO's source subsampling, which skips whole rows and columns
+ * as it reads. Since that doesn't filter, it only reduces the image to no less than twice the
+ * target size; the rest of the reduction is made by the same resampling as other icons.
+ */
+public final class ScaledImageLoader {
+    private ScaledImageLoader() {}
+
+    /**
+     * Loads an icon at the current {@link UiScaling}. The icon is also a {@link RescalableIcon},
+     * which reloads the image when asked for another scale (e.g. by the tweakers, if it's
+     * installed in the UI defaults).
+     *
+     * @param width the unscaled (100%) width to show the image at
+     * @param height the unscaled (100%) height to show the image at
+     */
+    public static ImageIcon load(URL url, int width, int height) {
+        return new LoadedIcon(url, width, height,
+                Math.max(1, UiScaling.scale(width)), Math.max(1, UiScaling.scale(height)));
+    }
+
+    /**
+     * Reads an image, resized to exactly the given size in pixels.
+     *
+     * @return an image of {@link BufferedImage#TYPE_INT_ARGB}
+     */
+    public static BufferedImage read(URL url, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size: " + width + "x" + height);
+        }
+        BufferedImage decoded;
+        try {
+            InputStream in = url.openStream();
+            try {
+                decoded = decode(url, in, width, height);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read " + url, e);
+        }
+        return Resampling.resize(decoded, width, height);
+    }
+
+    private static BufferedImage decode(URL url, InputStream in, int width, int height)
+            throws IOException {
+        ImageInputStream stream = ImageIO.createImageInputStream(in);
+        if (stream == null) {
+            throw new IllegalStateException("Unsupported image format: " + url);
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IllegalStateException("Unsupported image format: " + url);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = getSubsampling(
+                        reader.getWidth(0), reader.getHeight(0), width, height);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * @return the largest whole step which keeps the decoded image at least twice the target size
+     *         in both directions, so that the resampler's filtering steps have detail to work with.
+     */
+    static int getSubsampling(int sourceWidth, int sourceHeight, int width, int height) {
+        int step = Math.min(sourceWidth / (2 * width), sourceHeight / (2 * height));
+        return Math.max(1, step);
+    }
+
+    /**
+     * Extends {@link ImageIcon} so that the L&amp;F can derive a disabled icon from it.
+     */
+    private static final class LoadedIcon extends ImageIcon implements RescalableIcon {
+        private static final long serialVersionUID = 1L;
+
+        private final URL url;
+        private final int unscaledWidth;
+        private final int unscaledHeight;
+
+        LoadedIcon(URL url, int unscaledWidth, int unscaledHeight, int width, int height) {
+            super(read(url, width, height), url.toString());
+            this.url = url;
+            this.unscaledWidth = unscaledWidth;
+            this.unscaledHeight = unscaledHeight;
+        }
+
+        @Override
+        public Icon withScale(float scale) {
+            int width = Math.max(1, Math.round(unscaledWidth * scale));
+            int height = Math.max(1, Math.round(unscaledHeight * scale));
+            if (width == getIconWidth() && height == getIconHeight()) {
+                return this;
+            }
+            return new LoadedIcon(url, unscaledWidth, unscaledHeight, width, height);
+        }
+    }
+}
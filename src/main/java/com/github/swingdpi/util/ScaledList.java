@@ -0,0 +1,92 @@
+package com.github.swingdpi.util;
+
+import java.util.Vector;
+
+import javax.swing.JList;
+import javax.swing.ListModel;
+
+import com.github.swingdpi.UiScaling;
+
+/**
+ * A list which keeps fixed cell sizes through changes of scaling, so that a large model need not
+ * measure the renderer of every cell (as happens when no fixed size or prototype is set).
+ * <p>
+ * Cell sizes derived from a prototype value are recomputed after each UI update, since the font
+ * will generally have changed. Fixed sizes set explicitly are remembered in unscaled form, and
+ * rescaled as with {@link ScaledTable}.
+ */
+public class ScaledList<E> extends JList<E> {
+
+    /** These are null while our base class's constructor runs, and are then initialised unset. */
+    private final ScaledMetric explicitCellWidth = new ScaledMetric();
+    private final ScaledMetric explicitCellHeight = new ScaledMetric();
+
+    public ScaledList() {
+    }
+
+    public ScaledList(ListModel<E> dataModel) {
+        super(dataModel);
+    }
+
+    public ScaledList(E[] listData) {
+        super(listData);
+    }
+
+    public ScaledList(Vector<? extends E> listData) {
+        super(listData);
+    }
+
+    @Override
+    public void updateUI() {
+        super.updateUI();
+
+        // JList only measures the prototype when it (or the renderer) is set. Setting it again
+        // requires a different value, hence the intermediate null.
+        E prototype = getPrototypeCellValue();
+        if (prototype != null) {
+            setPrototypeCellValue(null);
+            setPrototypeCellValue(prototype);
+        }
+
+        int scaling = UiScaling.getScaling(this);
+        if (explicitCellWidth != null && explicitCellWidth.isSet()) {
+            super.setFixedCellWidth(explicitCellWidth.get(scaling));
+        }
+        if (explicitCellHeight != null && explicitCellHeight.isSet()) {
+            super.setFixedCellHeight(explicitCellHeight.get(scaling));
+        }
+    }
+
+    /**
+     * NB: the argument is expected to have scaling applied (unless it is -1).
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFixedCellWidth(int scaledWidth) {
+        super.setFixedCellWidth(scaledWidth);
+        remember(explicitCellWidth, scaledWidth);
+    }
+
+    /**
+     * NB: the argument is expected to have scaling applied (unless it is -1).
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFixedCellHeight(int scaledHeight) {
+        super.setFixedCellHeight(scaledHeight);
+        remember(explicitCellHeight, scaledHeight);
+    }
+
+    private void remember(ScaledMetric metric, int scaledValue) {
+        if (metric == null) {
+            return;
+        }
+        if (scaledValue < 0) {
+            metric.clear();
+        } else {
+            metric.set(scaledValue, UiScaling.getScaling(this));
+        }
+    }
+}
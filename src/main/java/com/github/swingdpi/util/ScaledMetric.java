@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+/**
+ * A pixel metric which has been explicitly set by the user, remembered in unscaled form (i.e. at
+ * 100%) so that it can be recomputed for any scaling level without drifting, as repeatedly
+ * multiplying the current pixel value by new/old scaling would.
+ */
+final class ScaledMetric {
+
+    /** The value at 100% scaling, or a negative value if not explicitly set. */
+    private float unscaled = -1f;
+
+    boolean isSet() {
+        return unscaled >= 0f;
+    }
+
+    void set(int scaledValue, int scalingInPercent) {
+        unscaled = unscale(scaledValue, scalingInPercent);
+    }
+
+    void clear() {
+        unscaled = -1f;
+    }
+
+    int get(int scalingInPercent) {
+        return scale(unscaled, scalingInPercent);
+    }
+
+    static float unscale(int scaledValue, int scalingInPercent) {
+        return scaledValue * 100f / scalingInPercent;
+    }
+
+    /**
+     * Rounds the same way as {@link com.github.swingdpi.UiScaling#scale(int)}, so that values
+     * set at 100% are indistinguishable from those scaled by the library.
+     */
+    static int scale(float unscaledValue, int scalingInPercent) {
+        return Math.round(unscaledValue * scalingInPercent / 100f);
+    }
+}
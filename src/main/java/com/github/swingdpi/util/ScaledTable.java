@@ -1,10 +1,15 @@
 package com.github.swingdpi.util;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.Vector;
 
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
 import javax.swing.LookAndFeel;
+import javax.swing.SizeSequence;
+import javax.swing.event.RowSorterEvent;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.TableColumnModel;
 import javax.swing.table.TableModel;
 
@@ -13,11 +18,29 @@ import com.github.swingdpi.UiScaling;
 public class ScaledTable extends JTable {
 
     /**
-     * null until setRowHeight() is called, after which it records the scalingset when that
-     * method was called. If the scaling preference is later updated, the table updates the
-     * row-height accordingly, and sets this value again.
+     * The uniform row height, if set explicitly by setRowHeight(int). Note that this is null
+     * while our base class's constructor runs (and calls setRowHeight), and is then initialised
+     * as 'unset'. That's what we want: the base class's default is not an explicit setting.
      */
-    private Integer uiScaleWhenRowHeightSet = null;
+    private final ScaledMetric explicitRowHeight = new ScaledMetric();
+
+    /**
+     * Heights set by setRowHeight(int, int) in unscaled form, indexed by model row so that they
+     * follow their rows through sorting. Null if no per-row heights have been set.
+     */
+    private UnscaledRowHeights explicitRowHeights;
+
+    /**
+     * The pixel heights of the rows in view order, derived from the above in a single bulk pass
+     * whenever needed after being invalidated (by scaling, sorting or model changes).
+     */
+    private SizeSequence rowSizes;
+
+    /** The scaling level for which the current pixel row heights were computed. */
+    private int appliedScaling;
+
+    /** True while the L&amp;F installs its properties, which are not explicit settings. */
+    private boolean updatingUI;
 
     public ScaledTable() {
     }
@@ -49,9 +72,14 @@ public class ScaledTable extends JTable {
 
     @Override
     public void updateUI() {
-        super.updateUI();
-        resetDefaultRowHeight();
-        rescaleRowHeightIfExplicitlySet();
+        updatingUI = true;
+        try {
+            super.updateUI();
+            resetDefaultRowHeight();
+        } finally {
+            updatingUI = false;
+        }
+        rescaleIfScalingChanged();
     }
 
     /**
@@ -59,31 +87,150 @@ public class ScaledTable extends JTable {
      * Calling setRowHeight() overrides this default.
      */
     private void resetDefaultRowHeight() {
-        int height = UiScaling.scale(19);
+        int height = UiScaling.scale(this, 19);
         LookAndFeel.installProperty(this, "rowHeight", height);
     }
 
-    private void rescaleRowHeightIfExplicitlySet() {
+    /**
+     * Creates a {@link ScaledTableColumnModel}, which allows column widths to be rescaled
+     * along with the row heights.
+     */
+    @Override
+    protected TableColumnModel createDefaultColumnModel() {
+        return new ScaledTableColumnModel();
+    }
+
+    private void rescaleIfScalingChanged() {
+        int scaling = UiScaling.getScaling(this);
+        if (scaling == appliedScaling) {
+            return;
+        }
+        int oldScaling = appliedScaling;
+        appliedScaling = scaling;
 
-        // Confusingly, since our base class's constructor calls setRowHeight() and updateUI(),
-        // m_ScalingWhenRowHeightSet is non-null in the first call here, during construction!
-        // However the the following 'if' condition will be false, which is what we want.
-        // Then m_ScalingWhenRowHeightSet gets set back to null until setRowHeight() is caled
-        if (uiScaleWhenRowHeightSet != null && uiScaleWhenRowHeightSet != UiScaling.getScaling()) {
+        if (oldScaling != 0 && getColumnModel() instanceof ScaledTableColumnModel) {
+            ((ScaledTableColumnModel) getColumnModel()).rescaleColumns(oldScaling, scaling);
+        }
 
-            // TODO: this may have rounding errors so may 'drift' after multiple changes.
-            setRowHeight(getRowHeight() * UiScaling.getScaling() / uiScaleWhenRowHeightSet);
+        // Recompute from the unscaled values, so there's no drift after multiple changes.
+        // (During construction explicitRowHeight is still null, and the if-condition above
+        // caught nothing since appliedScaling was not yet initialised.)
+        if (explicitRowHeight != null && explicitRowHeight.isSet()) {
+            super.setRowHeight(explicitRowHeight.get(scaling));
         }
+        rowSizes = null;
+        resizeAndRepaint();
     }
 
     /**
-     * NB: the argument is expected to have scaling applied.
+     * NB: the argument is expected to have scaling applied. Like the base class, this discards
+     * any heights which were set for individual rows.
      *
      * {@inheritDoc}
      */
     @Override
     public void setRowHeight(int scaledRowHeight) {
         super.setRowHeight(scaledRowHeight);
-        uiScaleWhenRowHeightSet  = UiScaling.getScaling();
+        if (explicitRowHeight != null && !updatingUI) {
+            explicitRowHeight.set(scaledRowHeight, UiScaling.getScaling(this));
+            explicitRowHeights = null;
+        }
+        rowSizes = null;
+    }
+
+    /**
+     * NB: the argument is expected to have scaling applied. The height is remembered in unscaled
+     * form, and is rescaled (along with all others) whenever the scaling level changes.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRowHeight(int row, int scaledRowHeight) {
+        if (scaledRowHeight <= 0) {
+            throw new IllegalArgumentException("New row height less than 1");
+        }
+        if (explicitRowHeights == null) {
+            explicitRowHeights = new UnscaledRowHeights(getModel().getRowCount());
+        }
+        explicitRowHeights.set(convertRowIndexToModel(row),
+                ScaledMetric.unscale(scaledRowHeight, UiScaling.getScaling(this)));
+        if (rowSizes != null) {
+            rowSizes.setSize(row, scaledRowHeight);
+        }
+        resizeAndRepaint();
+    }
+
+    @Override
+    public int getRowHeight(int row) {
+        SizeSequence sizes = getRowSizes();
+        return (sizes == null) ? super.getRowHeight(row) : sizes.getSize(row);
+    }
+
+    @Override
+    public int rowAtPoint(Point point) {
+        SizeSequence sizes = getRowSizes();
+        if (sizes == null) {
+            return super.rowAtPoint(point);
+        }
+        int row = sizes.getIndex(point.y);
+        return (row < 0 || row >= getRowCount()) ? -1 : row;
+    }
+
+    @Override
+    public Rectangle getCellRect(int row, int column, boolean includeSpacing) {
+        Rectangle rect = super.getCellRect(row, column, includeSpacing);
+        SizeSequence sizes = getRowSizes();
+        if (sizes != null && row >= 0 && row < getRowCount()) {
+
+            // The base class doesn't see our row sizes, so it positions the row as though all
+            // rows had the same height as this one.
+            rect.y += sizes.getPosition(row) - row * sizes.getSize(row);
+        }
+        return rect;
+    }
+
+    /**
+     * @return the view-ordered row sizes, or null if all rows have the uniform row height.
+     */
+    private SizeSequence getRowSizes() {
+        if (explicitRowHeights == null) {
+            return null;
+        }
+        if (rowSizes == null) {
+            int scaling = UiScaling.getScaling(this);
+            int uniformHeight = getRowHeight();
+            int[] sizes = new int[getRowCount()];
+            for (int i = 0; i < sizes.length; ++i) {
+                float unscaled = explicitRowHeights.get(convertRowIndexToModel(i));
+                sizes[i] = (unscaled > 0f) ? ScaledMetric.scale(unscaled, scaling) : uniformHeight;
+            }
+            rowSizes = new SizeSequence(sizes);
+        }
+        return rowSizes;
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        super.tableChanged(e);
+
+        // Mirror how the base class maintains its own per-row heights. (Note that our fields
+        // are not yet initialised when this is first called, by our base class's constructor.)
+        if (explicitRowHeights != null) {
+            if (e == null || e.getFirstRow() == TableModelEvent.HEADER_ROW ||
+                    (e.getType() == TableModelEvent.UPDATE && e.getLastRow() == Integer.MAX_VALUE)) {
+                explicitRowHeights = null;
+            } else if (e.getType() == TableModelEvent.INSERT) {
+                explicitRowHeights.insert(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+            } else if (e.getType() == TableModelEvent.DELETE) {
+                explicitRowHeights.remove(e.getFirstRow(), e.getLastRow() - e.getFirstRow() + 1);
+            }
+        }
+        rowSizes = null;
+    }
+
+    @Override
+    public void sorterChanged(RowSorterEvent e) {
+        super.sorterChanged(e);
+        rowSizes = null;
     }
 }
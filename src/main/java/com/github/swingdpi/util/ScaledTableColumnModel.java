@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.beans.PropertyChangeEvent;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.swing.table.DefaultTableColumnModel;
+import javax.swing.table.TableColumn;
+
+/**
+ * A column model which remembers the widths of its columns in unscaled form, so that they can be
+ * rescaled (without drift) when the scaling level changes. All columns are rescaled as one batch,
+ * which results in a single notification to listeners, and so a single layout and repaint.
+ * <p>
+ * This is the default column model created by {@link ScaledTable}.
+ */
+public class ScaledTableColumnModel extends DefaultTableColumnModel {
+
+    private final Map<TableColumn, UnscaledWidths> unscaledWidths =
+            new IdentityHashMap<TableColumn, UnscaledWidths>();
+
+    /** True while rescaling, to suppress the events fired by each column for each width. */
+    private boolean rescaling = false;
+
+    /**
+     * Rescales the minimum, preferred, current and maximum widths of all columns. Widths which
+     * have changed since the last rescale (e.g. the user dragged a column) are taken to be
+     * relative to {@code oldScaling}; others are recomputed from their remembered unscaled values.
+     */
+    public void rescaleColumns(int oldScaling, int newScaling) {
+        rescaling = true;
+        try {
+            for (TableColumn column : tableColumns) {
+                UnscaledWidths widths = unscaledWidths.get(column);
+                if (widths == null) {
+                    widths = new UnscaledWidths();
+                    unscaledWidths.put(column, widths);
+                }
+                widths.captureChanges(column, oldScaling);
+                widths.applyTo(column, newScaling);
+            }
+        } finally {
+            rescaling = false;
+        }
+
+        // One notification for the whole batch
+        super.propertyChange(new PropertyChangeEvent(this, "width", null, null));
+    }
+
+    @Override
+    public void propertyChange(PropertyChangeEvent evt) {
+        if (!rescaling) {
+            super.propertyChange(evt);
+        }
+    }
+
+    @Override
+    public void removeColumn(TableColumn column) {
+        unscaledWidths.remove(column);
+        super.removeColumn(column);
+    }
+
+    private static final class UnscaledWidths {
+
+        private final ScaledMetric minWidth = new ScaledMetric();
+        private final ScaledMetric preferredWidth = new ScaledMetric();
+        private final ScaledMetric width = new ScaledMetric();
+        private final ScaledMetric maxWidth = new ScaledMetric();
+
+        /** The pixel widths most recently applied, to detect changes made by others. */
+        private int appliedMin = -1;
+        private int appliedPreferred = -1;
+        private int appliedWidth = -1;
+        private int appliedMax = -1;
+
+        void captureChanges(TableColumn column, int scaling) {
+            if (column.getMinWidth() != appliedMin) {
+                minWidth.set(column.getMinWidth(), scaling);
+            }
+            if (column.getPreferredWidth() != appliedPreferred) {
+                preferredWidth.set(column.getPreferredWidth(), scaling);
+            }
+            if (column.getWidth() != appliedWidth) {
+                width.set(column.getWidth(), scaling);
+            }
+            if (column.getMaxWidth() != appliedMax) {
+                if (column.getMaxWidth() == Integer.MAX_VALUE) {
+                    maxWidth.clear();
+                } else {
+                    maxWidth.set(column.getMaxWidth(), scaling);
+                }
+            }
+        }
+
+        void applyTo(TableColumn column, int scaling) {
+            appliedMin = minWidth.get(scaling);
+            appliedPreferred = preferredWidth.get(scaling);
+            appliedWidth = width.get(scaling);
+            appliedMax = maxWidth.isSet() ? maxWidth.get(scaling) : Integer.MAX_VALUE;
+
+            // Relax the bounds first so that no value is clamped by a bound not yet rescaled.
+            column.setMinWidth(0);
+            column.setMaxWidth(Integer.MAX_VALUE);
+            column.setPreferredWidth(appliedPreferred);
+            column.setWidth(appliedWidth);
+            column.setMaxWidth(appliedMax);
+            column.setMinWidth(appliedMin);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.swingdpi.util;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+import javax.swing.JTree;
+import javax.swing.LookAndFeel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreeNode;
+
+import com.github.swingdpi.UiScaling;
+
+/**
+ * A tree which keeps a fixed row height through changes of scaling. This avoids the tree falling
+ * back to measuring the renderer of every row (as it does when the row height is not positive),
+ * and allows large models to use the constant-time layout cache (see {@link #setLargeModel}).
+ * <p>
+ * As with {@link ScaledTable}, a row height set explicitly is remembered in unscaled form and
+ * rescaled when the scaling level changes.
+ */
+public class ScaledTree extends JTree {
+
+    /**
+     * The row height, if set explicitly. This is null while our base class's constructor runs,
+     * and is then initialised as 'unset'.
+     */
+    private final ScaledMetric explicitRowHeight = new ScaledMetric();
+
+    /** True while the L&amp;F installs its properties, which are not explicit settings. */
+    private boolean updatingUI;
+
+    public ScaledTree() {
+    }
+
+    public ScaledTree(Object[] value) {
+        super(value);
+    }
+
+    public ScaledTree(Vector<?> value) {
+        super(value);
+    }
+
+    public ScaledTree(Hashtable<?, ?> value) {
+        super(value);
+    }
+
+    public ScaledTree(TreeNode root) {
+        super(root);
+    }
+
+    public ScaledTree(TreeNode root, boolean asksAllowsChildren) {
+        super(root, asksAllowsChildren);
+    }
+
+    public ScaledTree(TreeModel newModel) {
+        super(newModel);
+    }
+
+    @Override
+    public void updateUI() {
+        updatingUI = true;
+        try {
+            super.updateUI();
+            installFixedRowHeight();
+        } finally {
+            updatingUI = false;
+        }
+        if (explicitRowHeight != null && explicitRowHeight.isSet()) {
+            super.setRowHeight(explicitRowHeight.get(UiScaling.getScaling(this)));
+        }
+    }
+
+    /**
+     * If the L&amp;F leaves row heights to be determined by the renderer, use the same default
+     * row height as {@link ScaledTable} instead. Calling setRowHeight() overrides this default.
+     */
+    private void installFixedRowHeight() {
+        if (getRowHeight() <= 0) {
+            LookAndFeel.installProperty(this, "rowHeight", UiScaling.scale(this, 19));
+        }
+    }
+
+    /**
+     * NB: the argument is expected to have scaling applied.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRowHeight(int scaledRowHeight) {
+        super.setRowHeight(scaledRowHeight);
+        if (explicitRowHeight != null && !updatingUI) {
+            explicitRowHeight.set(scaledRowHeight, UiScaling.getScaling(this));
+        }
+    }
+}
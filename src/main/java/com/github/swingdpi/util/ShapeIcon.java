@@ -0,0 +1,520 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.LinearGradientPaint;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.swing.AbstractButton;
+import javax.swing.GrayFilter;
+
+/**
+ * An icon defined by vector shapes, which is rendered directly at its scaled size (and at the
+ * device resolution) so remains sharp at any scaling. Unlike scaling a bitmap icon, there is no
+ * resampling, and no need to ship a bitmap for each scaling level.
+ * <p>
+ * Icons are read from a compact line-based text format. Coordinates are in unscaled pixels, and
+ * each shape is painted with the fill and stroke most recently set. For example:
+ * <pre>
+ * # A blue folder
+ * size 16 16
+ * fill linear 0 2 0 14 #8CB4E6 #4A7EC2
+ * stroke #2F5F9F 1
+ * path M 1.5 3.5 L 6.5 3.5 L 8 5 L 14.5 5 L 14.5 13.5 L 1.5 13.5 Z
+ * </pre>
+ * The commands are:
+ * <ul>
+ * <li>{@code size w h} - the unscaled icon size (required, and first)
+ * <li>{@code fill none | #rrggbb[aa] | linear x1 y1 x2 y2 colors... | radial cx cy r colors...}
+ *     - gradient colours are spaced evenly
+ * <li>{@code stroke none | #rrggbb[aa] width [butt|round|square] [miter|round|bevel]}
+ * <li>{@code rect x y w h [arcw arch]}, {@code ellipse x y w h}
+ * <li>{@code path ...} - SVG-style path data using M, L, H, V, C, Q and Z (lowercase relative)
+ * </ul>
+ * Blank lines and lines starting with {@code #} are ignored.
+ * <p>
+ * When installed in the UI defaults, the tweakers replace the icon by one rendered at the scaled
+ * size; see {@link #withScale(float)}.
+ */
+public class ShapeIcon implements RescalableIcon {
+
+    private final List<Element> elements;
+    private final int unscaledWidth;
+    private final int unscaledHeight;
+    private final float scaleFactor;
+
+    private SoftReference<BufferedImage> enabledRaster = new SoftReference<BufferedImage>(null);
+    private SoftReference<Image> disabledRaster = new SoftReference<Image>(null);
+
+    private ShapeIcon(List<Element> elements, int width, int height, float scaleFactor) {
+        this.elements = elements;
+        this.unscaledWidth = width;
+        this.unscaledHeight = height;
+        this.scaleFactor = scaleFactor;
+    }
+
+    public static ShapeIcon parse(String definition) {
+        try {
+            return read(new StringReader(definition));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Not possible with a StringReader
+        }
+    }
+
+    /**
+     * Reads a definition, for example from a resource alongside the class using it.
+     * The stream is read as UTF-8 and closed.
+     */
+    public static ShapeIcon read(InputStream in) throws IOException {
+        try {
+            return read(new InputStreamReader(in, Charset.forName("UTF-8")));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the definition is malformed
+     */
+    public static ShapeIcon read(Reader reader) throws IOException {
+        return new Parser().parse(new BufferedReader(reader));
+    }
+
+    /**
+     * @return an icon with the same shapes, at the given scaling of their unscaled size. (The
+     *         shapes are shared, so this is cheap.)
+     */
+    @Override
+    public ShapeIcon withScale(float scale) {
+        return new ShapeIcon(elements, unscaledWidth, unscaledHeight, scale);
+    }
+
+    public float getScaleFactor() {
+        return scaleFactor;
+    }
+
+    @Override
+    public int getIconWidth() {
+        return Math.round(unscaledWidth * scaleFactor);
+    }
+
+    @Override
+    public int getIconHeight() {
+        return Math.round(unscaledHeight * scaleFactor);
+    }
+
+    @Override
+    public void paintIcon(Component c, Graphics g, int x, int y) {
+        int width = getIconWidth();
+        int height = getIconHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        // Render at device resolution, e.g. where Java itself applies HiDPI scaling (Java 9+)
+        AffineTransform at = (g instanceof Graphics2D) ?
+                ((Graphics2D) g).getTransform() : new AffineTransform();
+        int deviceWidth = Math.max(1, (int) Math.round(width * Math.abs(at.getScaleX())));
+        int deviceHeight = Math.max(1, (int) Math.round(height * Math.abs(at.getScaleY())));
+
+        boolean enabled = !(c instanceof AbstractButton) || c.isEnabled();
+        Image image = enabled ?
+                getEnabledRaster(deviceWidth, deviceHeight) :
+                getDisabledRaster(deviceWidth, deviceHeight);
+        g.drawImage(image, x, y, width, height, null);
+    }
+
+    private BufferedImage getEnabledRaster(int deviceWidth, int deviceHeight) {
+        BufferedImage image = enabledRaster.get();
+        if (image == null || image.getWidth() != deviceWidth || image.getHeight() != deviceHeight) {
+            image = render(deviceWidth, deviceHeight);
+            enabledRaster = new SoftReference<BufferedImage>(image);
+        }
+        return image;
+    }
+
+    private Image getDisabledRaster(int deviceWidth, int deviceHeight) {
+        Image image = disabledRaster.get();
+        if (image == null || image.getWidth(null) != deviceWidth ||
+                image.getHeight(null) != deviceHeight) {
+            image = GrayFilter.createDisabledImage(getEnabledRaster(deviceWidth, deviceHeight));
+            disabledRaster = new SoftReference<Image>(image);
+        }
+        return image;
+    }
+
+    private BufferedImage render(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                    RenderingHints.VALUE_STROKE_PURE);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING,
+                    RenderingHints.VALUE_RENDER_QUALITY);
+            g2.scale(width / (double) unscaledWidth, height / (double) unscaledHeight);
+            for (Element element : elements) {
+                element.paint(g2);
+            }
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * A shape with the fill and stroke in effect when it was defined.
+     */
+    private static final class Element {
+        private final Shape shape;
+        private final Paint fill;
+        private final Color strokeColor;
+        private final BasicStroke stroke;
+
+        Element(Shape shape, Paint fill, Color strokeColor, BasicStroke stroke) {
+            this.shape = shape;
+            this.fill = fill;
+            this.strokeColor = strokeColor;
+            this.stroke = stroke;
+        }
+
+        void paint(Graphics2D g2) {
+            if (fill != null) {
+                g2.setPaint(fill);
+                g2.fill(shape);
+            }
+            if (strokeColor != null) {
+                g2.setColor(strokeColor);
+                g2.setStroke(stroke);
+                g2.draw(shape);
+            }
+        }
+    }
+
+    private static final class Parser {
+        private final List<Element> elements = new ArrayList<Element>();
+        private int width = -1;
+        private int height = -1;
+        private Paint fill = Color.BLACK;
+        private Color strokeColor = null;
+        private BasicStroke stroke = new BasicStroke(1f);
+
+        private int lineNumber = 0;
+        private String[] tokens;
+        private int next;
+
+        ShapeIcon parse(BufferedReader reader) throws IOException {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                tokens = tokenize(line);
+                next = 0;
+                parseCommand(nextToken());
+                if (next < tokens.length) {
+                    throw error("Unexpected '" + tokens[next] + "'");
+                }
+            }
+            if (width <= 0) {
+                throw error("Missing 'size'");
+            }
+            return new ShapeIcon(
+                    Collections.unmodifiableList(elements), width, height, 1f);
+        }
+
+        private void parseCommand(String command) {
+            if (width <= 0 && !command.equals("size")) {
+                throw error("Expected 'size' first");
+            }
+            if (command.equals("size")) {
+                width = Math.round(nextNumber());
+                height = Math.round(nextNumber());
+                if (width <= 0 || height <= 0) {
+                    throw error("Size must be positive");
+                }
+            } else if (command.equals("fill")) {
+                fill = parseFill();
+            } else if (command.equals("stroke")) {
+                parseStroke();
+            } else if (command.equals("rect")) {
+                float x = nextNumber();
+                float y = nextNumber();
+                float w = nextNumber();
+                float h = nextNumber();
+                if (next < tokens.length) {
+                    add(new RoundRectangle2D.Float(x, y, w, h, nextNumber(), nextNumber()));
+                } else {
+                    add(new Rectangle2D.Float(x, y, w, h));
+                }
+            } else if (command.equals("ellipse")) {
+                add(new Ellipse2D.Float(nextNumber(), nextNumber(), nextNumber(), nextNumber()));
+            } else if (command.equals("path")) {
+                add(parsePath());
+            } else {
+                throw error("Unknown command '" + command + "'");
+            }
+        }
+
+        private void add(Shape shape) {
+            elements.add(new Element(shape, fill, strokeColor, stroke));
+        }
+
+        private Paint parseFill() {
+            String type = nextToken();
+            if (type.equals("none")) {
+                return null;
+            }
+            if (type.equals("linear")) {
+                Point2D start = new Point2D.Float(nextNumber(), nextNumber());
+                Point2D end = new Point2D.Float(nextNumber(), nextNumber());
+                Color[] colors = remainingColors();
+                return new LinearGradientPaint(start, end, evenFractions(colors.length), colors);
+            }
+            if (type.equals("radial")) {
+                Point2D center = new Point2D.Float(nextNumber(), nextNumber());
+                float radius = nextNumber();
+                Color[] colors = remainingColors();
+                return new RadialGradientPaint(
+                        center, radius, evenFractions(colors.length), colors);
+            }
+            return parseColor(type);
+        }
+
+        private void parseStroke() {
+            String color = nextToken();
+            if (color.equals("none")) {
+                strokeColor = null;
+                return;
+            }
+            strokeColor = parseColor(color);
+            float width = nextNumber();
+            int cap = BasicStroke.CAP_BUTT;
+            int join = BasicStroke.JOIN_MITER;
+            if (next < tokens.length) {
+                cap = parseOption(nextToken(), new String[] { "butt", "round", "square" },
+                        new int[] { BasicStroke.CAP_BUTT, BasicStroke.CAP_ROUND,
+                                BasicStroke.CAP_SQUARE });
+            }
+            if (next < tokens.length) {
+                join = parseOption(nextToken(), new String[] { "miter", "round", "bevel" },
+                        new int[] { BasicStroke.JOIN_MITER, BasicStroke.JOIN_ROUND,
+                                BasicStroke.JOIN_BEVEL });
+            }
+            stroke = new BasicStroke(width, cap, join);
+        }
+
+        private int parseOption(String token, String[] names, int[] values) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(token)) {
+                    return values[i];
+                }
+            }
+            throw error("Unknown option '" + token + "'");
+        }
+
+        private Color[] remainingColors() {
+            List<Color> colors = new ArrayList<Color>();
+            while (next < tokens.length) {
+                colors.add(parseColor(nextToken()));
+            }
+            if (colors.size() < 2) {
+                throw error("A gradient needs at least 2 colours");
+            }
+            return colors.toArray(new Color[colors.size()]);
+        }
+
+        private static float[] evenFractions(int count) {
+            float[] fractions = new float[count];
+            for (int i = 0; i < count; i++) {
+                fractions[i] = i / (float) (count - 1);
+            }
+            return fractions;
+        }
+
+        private Color parseColor(String token) {
+            if (token.startsWith("#") && (token.length() == 7 || token.length() == 9)) {
+                try {
+                    long value = Long.parseLong(token.substring(1), 16);
+                    if (token.length() == 7) {
+                        return new Color((int) value);
+                    }
+                    return new Color((int) (value >> 24) & 0xff, (int) (value >> 16) & 0xff,
+                            (int) (value >> 8) & 0xff, (int) value & 0xff);
+                } catch (NumberFormatException e) {
+                    // Reported below
+                }
+            }
+            throw error("Expected a colour (#rrggbb or #rrggbbaa) but found '" + token + "'");
+        }
+
+        private Path2D parsePath() {
+            Path2D.Float path = new Path2D.Float();
+            float x = 0;
+            float y = 0;
+            while (next < tokens.length) {
+                String command = nextToken();
+                if (command.length() != 1) {
+                    throw error("Expected a path command but found '" + command + "'");
+                }
+                char letter = command.charAt(0);
+                boolean relative = Character.isLowerCase(letter);
+                float ox = relative ? x : 0;
+                float oy = relative ? y : 0;
+                switch (Character.toUpperCase(letter)) {
+                case 'M':
+                    x = ox + nextNumber();
+                    y = oy + nextNumber();
+                    path.moveTo(x, y);
+                    break;
+                case 'L':
+                    x = ox + nextNumber();
+                    y = oy + nextNumber();
+                    path.lineTo(x, y);
+                    break;
+                case 'H':
+                    x = ox + nextNumber();
+                    path.lineTo(x, y);
+                    break;
+                case 'V':
+                    y = oy + nextNumber();
+                    path.lineTo(x, y);
+                    break;
+                case 'Q': {
+                    float x1 = ox + nextNumber();
+                    float y1 = oy + nextNumber();
+                    x = ox + nextNumber();
+                    y = oy + nextNumber();
+                    path.quadTo(x1, y1, x, y);
+                    break;
+                }
+                case 'C': {
+                    float x1 = ox + nextNumber();
+                    float y1 = oy + nextNumber();
+                    float x2 = ox + nextNumber();
+                    float y2 = oy + nextNumber();
+                    x = ox + nextNumber();
+                    y = oy + nextNumber();
+                    path.curveTo(x1, y1, x2, y2, x, y);
+                    break;
+                }
+                case 'Z':
+                    path.closePath();
+                    Point2D current = path.getCurrentPoint();
+                    if (current != null) {
+                        x = (float) current.getX();
+                        y = (float) current.getY();
+                    }
+                    break;
+                default:
+                    throw error("Unknown path command '" + command + "'");
+                }
+            }
+            return path;
+        }
+
+        /**
+         * Splits on whitespace and commas, and separates path command letters from numbers.
+         */
+        private static String[] tokenize(String line) {
+            List<String> result = new ArrayList<String>();
+            StringBuilder token = new StringBuilder();
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                boolean separator = Character.isWhitespace(c) || c == ',';
+                boolean pathCommand = "MLHVCQZmlhvcqz".indexOf(c) >= 0 && isWord(token) &&
+                        (i + 1 == line.length() || !Character.isLetter(line.charAt(i + 1))) &&
+                        (i == 0 || !Character.isLetter(line.charAt(i - 1)));
+                if (separator || pathCommand) {
+                    if (token.length() > 0) {
+                        result.add(token.toString());
+                        token.setLength(0);
+                    }
+                    if (pathCommand) {
+                        result.add(String.valueOf(c));
+                    }
+                } else {
+                    token.append(c);
+                }
+            }
+            if (token.length() > 0) {
+                result.add(token.toString());
+            }
+            return result.toArray(new String[result.size()]);
+        }
+
+        /** Whether the token so far could be followed by a path command (i.e. isn't a colour). */
+        private static boolean isWord(StringBuilder token) {
+            return token.length() == 0 || token.charAt(0) != '#';
+        }
+
+        private String nextToken() {
+            if (next >= tokens.length) {
+                throw error("Unexpected end of line");
+            }
+            return tokens[next++];
+        }
+
+        private float nextNumber() {
+            String token = nextToken();
+            try {
+                return Float.parseFloat(token);
+            } catch (NumberFormatException e) {
+                throw error("Expected a number but found '" + token + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(
+                    String.format(Locale.ROOT, "Line %d: %s", lineNumber, message));
+        }
+    }
+}
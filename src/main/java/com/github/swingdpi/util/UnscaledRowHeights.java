@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * This project is hosted at: https://github.com/lukeu/swing-dpi
+ * Comments & collaboration are both welcome.
+ */
+
+package com.github.swingdpi.util;
+
+import java.util.Arrays;
+
+/**
+ * A compact, growable array of unscaled row heights, indexed by model row. A value of zero means
+ * the row has no explicit height of its own.
+ */
+final class UnscaledRowHeights {
+
+    private float[] heights;
+    private int size;
+
+    UnscaledRowHeights(int rowCount) {
+        heights = new float[Math.max(rowCount, 16)];
+        size = rowCount;
+    }
+
+    /**
+     * @return the unscaled height of the row, or zero if not explicitly set
+     */
+    float get(int row) {
+        return (row < size) ? heights[row] : 0f;
+    }
+
+    void set(int row, float unscaledHeight) {
+        if (row >= size) {
+            ensureCapacity(row + 1);
+            size = row + 1;
+        }
+        heights[row] = unscaledHeight;
+    }
+
+    void insert(int first, int count) {
+        if (first >= size) {
+            return;
+        }
+        ensureCapacity(size + count);
+        System.arraycopy(heights, first, heights, first + count, size - first);
+        Arrays.fill(heights, first, first + count, 0f);
+        size += count;
+    }
+
+    void remove(int first, int count) {
+        if (first >= size) {
+            return;
+        }
+        int end = Math.min(first + count, size);
+        System.arraycopy(heights, end, heights, first, size - end);
+        Arrays.fill(heights, size - (end - first), size, 0f);
+        size -= end - first;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > heights.length) {
+            heights = Arrays.copyOf(heights, Math.max(capacity, heights.length * 3 / 2));
+        }
+    }
+}